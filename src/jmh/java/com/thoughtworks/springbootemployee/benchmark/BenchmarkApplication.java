@@ -0,0 +1,34 @@
+package com.thoughtworks.springbootemployee.benchmark;
+
+import com.thoughtworks.springbootemployee.SpringBootEmployeeApplication;
+import com.thoughtworks.springbootemployee.model.Employee;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class BenchmarkApplication {
+
+    public static ConfigurableApplicationContext start(String... properties) {
+        List<String> defaults = new ArrayList<>();
+        defaults.add("spring.datasource.url=jdbc:h2:mem:benchmark-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        defaults.add("spring.main.banner-mode=off");
+        defaults.add("logging.level.root=warn");
+        return new SpringApplicationBuilder(SpringBootEmployeeApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(defaults.toArray(new String[0]))
+                .properties(properties)
+                .run();
+    }
+
+    public static List<Employee> employees(int size, Integer companyId) {
+        List<Employee> employees = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            employees.add(new Employee(null, "employee" + i, 20 + i % 40, i % 2 == 0 ? "male" : "female", 5000 + i, companyId));
+        }
+        return employees;
+    }
+}
@@ -0,0 +1,63 @@
+package com.thoughtworks.springbootemployee.benchmark;
+
+import com.thoughtworks.springbootemployee.exception.NoSuchDataException;
+import com.thoughtworks.springbootemployee.model.Company;
+import com.thoughtworks.springbootemployee.repository.CompanyRepository;
+import com.thoughtworks.springbootemployee.service.CompanyService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+// every invocation deletes a freshly saved company, so only single shots are measured;
+// deleteCompanyById should stay flat across sizes while the cascade grows with headcount
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CompanyDeleteBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int size;
+
+    private ConfigurableApplicationContext context;
+    private CompanyRepository companyRepository;
+    private CompanyService companyService;
+    private TransactionTemplate transactionTemplate;
+    private Integer companyId;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        companyRepository = context.getBean(CompanyRepository.class);
+        companyService = context.getBean(CompanyService.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+    }
+
+    @Setup(Level.Invocation)
+    public void saveCompany() {
+        Company company = new Company(null, "benchmark", size, BenchmarkApplication.employees(size, null));
+        companyId = companyRepository.save(company).getId();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object deleteCompanyById() throws NoSuchDataException {
+        return companyService.deleteCompanyById(companyId);
+    }
+
+    @Benchmark
+    public void deleteCompanyByCascade() {
+        transactionTemplate.execute(status -> {
+            companyRepository.delete(companyRepository.findById(companyId).get());
+            return null;
+        });
+    }
+}
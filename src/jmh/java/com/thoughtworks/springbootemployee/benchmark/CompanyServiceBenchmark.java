@@ -0,0 +1,44 @@
+package com.thoughtworks.springbootemployee.benchmark;
+
+import com.thoughtworks.springbootemployee.model.Company;
+import com.thoughtworks.springbootemployee.repository.CompanyRepository;
+import com.thoughtworks.springbootemployee.service.CompanyService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompanyServiceBenchmark {
+
+    @Param({"1000", "10000"})
+    private int size;
+
+    private ConfigurableApplicationContext context;
+    private CompanyService companyService;
+    private Integer companyId;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        Company company = new Company(null, "benchmark", size, BenchmarkApplication.employees(size, null));
+        companyId = context.getBean(CompanyRepository.class).save(company).getId();
+        companyService = context.getBean(CompanyService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    // the service loads company.getEmployees() inside its own read-only transaction
+    @Benchmark
+    public Object getEmployeesByCompanyId() {
+        return companyService.getEmployeesByCompanyId(companyId);
+    }
+}
@@ -0,0 +1,59 @@
+package com.thoughtworks.springbootemployee.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thoughtworks.springbootemployee.Mapper.EmployeeMapper;
+import com.thoughtworks.springbootemployee.config.CompressionFilter;
+import com.thoughtworks.springbootemployee.dto.EmployeeResponse;
+import com.thoughtworks.springbootemployee.model.Employee;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// the score is the CPU cost of gzipping a GET /employees body; savedBytes / rawBytes is what each level buys
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+    @Param({"100", "10000"})
+    private int size;
+
+    @Param({"1", "6", "9"})
+    private int level;
+
+    private byte[] body;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Bytes {
+        public long rawBytes;
+        public long savedBytes;
+    }
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        List<EmployeeResponse> employeeResponses = new ArrayList<>(size);
+        int id = 1;
+        for (Employee employee : BenchmarkApplication.employees(size, 1)) {
+            employee.setId(id++);
+            employeeResponses.add(EmployeeMapper.convertEntityToEmployeeResponse(employee));
+        }
+        body = objectMapper.writeValueAsBytes(employeeResponses);
+    }
+
+    @Benchmark
+    public byte[] gzip(Bytes bytes) {
+        byte[] compressed = CompressionFilter.gzip(body, level);
+        bytes.rawBytes += body.length;
+        bytes.savedBytes += body.length - compressed.length;
+        return compressed;
+    }
+}
@@ -0,0 +1,59 @@
+package com.thoughtworks.springbootemployee.benchmark;
+
+import com.thoughtworks.springbootemployee.exception.IllegalOperationException;
+import com.thoughtworks.springbootemployee.exception.NoSuchDataException;
+import com.thoughtworks.springbootemployee.model.Employee;
+import com.thoughtworks.springbootemployee.repository.EmployeeRepository;
+import com.thoughtworks.springbootemployee.service.EmployeeService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// divide size by the score to get rows per second for each path; every invocation starts from an empty table, since a
+// table left to grow by whichever path inserts more rows per iteration skews the comparison
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class EmployeeImportBenchmark {
+
+    @Param({"1000", "5000"})
+    private int size;
+
+    private ConfigurableApplicationContext context;
+    private EmployeeService employeeService;
+    private EmployeeRepository employeeRepository;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        employeeService = context.getBean(EmployeeService.class);
+        employeeRepository = context.getBean(EmployeeRepository.class);
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyTable() {
+        employeeRepository.deleteAllInBatch();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void addEmployeeOneByOne() throws NoSuchDataException {
+        for (Employee employee : BenchmarkApplication.employees(size, null)) {
+            employeeService.addEmployee(employee);
+        }
+    }
+
+    @Benchmark
+    public List<Integer> addEmployeesInBatches() throws IllegalOperationException {
+        return employeeService.addEmployees(BenchmarkApplication.employees(size, null));
+    }
+}
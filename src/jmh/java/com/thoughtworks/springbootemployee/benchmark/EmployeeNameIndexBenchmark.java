@@ -0,0 +1,52 @@
+package com.thoughtworks.springbootemployee.benchmark;
+
+import com.thoughtworks.springbootemployee.service.EmployeeNameIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// sample mode reports the p99 of single suggest calls rather than an average
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class EmployeeNameIndexBenchmark {
+
+    private static final String[] FIRST_NAMES = {"zach", "york", "alex", "green", "karen", "chris", "quentin", "woody", "hzh", "anna"};
+    private static final String[] SYLLABLES = {"ka", "ren", "sa", "mi", "to", "lo", "vi", "ne", "ru", "de", "xi", "po"};
+
+    @Param({"1000000"})
+    private int size;
+
+    private EmployeeNameIndex nameIndex;
+
+    @Setup
+    public void setUp() {
+        nameIndex = new EmployeeNameIndex(null);
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            String lastName = SYLLABLES[random.nextInt(SYLLABLES.length)] + SYLLABLES[random.nextInt(SYLLABLES.length)]
+                    + SYLLABLES[random.nextInt(SYLLABLES.length)];
+            nameIndex.put(i, FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + lastName);
+        }
+    }
+
+    @Benchmark
+    public List<?> shortPrefix() {
+        return nameIndex.suggest("k", 10);
+    }
+
+    @Benchmark
+    public List<?> longPrefix() {
+        return nameIndex.suggest("karenmi", 10);
+    }
+
+    @Benchmark
+    public List<?> twoTokens() {
+        return nameIndex.suggest("anna rens", 10);
+    }
+}
@@ -0,0 +1,40 @@
+package com.thoughtworks.springbootemployee.benchmark;
+
+import com.thoughtworks.springbootemployee.repository.EmployeeRepository;
+import com.thoughtworks.springbootemployee.service.EmployeeService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmployeeServiceBenchmark {
+
+    @Param({"1000", "10000"})
+    private int size;
+
+    private ConfigurableApplicationContext context;
+    private EmployeeService employeeService;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        context.getBean(EmployeeRepository.class).saveAll(BenchmarkApplication.employees(size, null));
+        employeeService = context.getBean(EmployeeService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object getAll() {
+        return employeeService.getAll();
+    }
+}
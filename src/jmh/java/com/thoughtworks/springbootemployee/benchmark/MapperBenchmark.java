@@ -0,0 +1,73 @@
+package com.thoughtworks.springbootemployee.benchmark;
+
+import com.thoughtworks.springbootemployee.Mapper.CompanyMapper;
+import com.thoughtworks.springbootemployee.Mapper.EmployeeMapper;
+import com.thoughtworks.springbootemployee.dto.CompanyResponse;
+import com.thoughtworks.springbootemployee.dto.EmployeeResponse;
+import com.thoughtworks.springbootemployee.model.Company;
+import com.thoughtworks.springbootemployee.model.Employee;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.beans.BeanUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+
+    @Param({"100", "10000"})
+    private int size;
+
+    private List<Employee> employees;
+    private List<Company> companies;
+
+    @Setup
+    public void setUp() {
+        employees = new ArrayList<>(size);
+        companies = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            employees.add(new Employee(i, "employee" + i, 20 + i % 40, i % 2 == 0 ? "male" : "female", 5000 + i, i % 10));
+            companies.add(new Company(i, "company" + i, 1, Collections.singletonList(employees.get(i))));
+        }
+    }
+
+    @Benchmark
+    public void employeeBeanUtils(Blackhole blackhole) {
+        for (Employee employee : employees) {
+            EmployeeResponse employeeResponse = new EmployeeResponse();
+            BeanUtils.copyProperties(employee, employeeResponse);
+            blackhole.consume(employeeResponse);
+        }
+    }
+
+    @Benchmark
+    public void employeeMapper(Blackhole blackhole) {
+        for (Employee employee : employees) {
+            blackhole.consume(EmployeeMapper.convertEntityToEmployeeResponse(employee));
+        }
+    }
+
+    @Benchmark
+    public void companyBeanUtils(Blackhole blackhole) {
+        for (Company company : companies) {
+            CompanyResponse companyResponse = new CompanyResponse();
+            BeanUtils.copyProperties(company, companyResponse);
+            blackhole.consume(companyResponse);
+        }
+    }
+
+    @Benchmark
+    public void companyMapper(Blackhole blackhole) {
+        for (Company company : companies) {
+            blackhole.consume(CompanyMapper.convertCompanyToCompanyResponse(company));
+        }
+    }
+}
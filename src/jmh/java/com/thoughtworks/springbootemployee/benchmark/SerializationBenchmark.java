@@ -0,0 +1,43 @@
+package com.thoughtworks.springbootemployee.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thoughtworks.springbootemployee.Mapper.EmployeeMapper;
+import com.thoughtworks.springbootemployee.dto.EmployeeResponse;
+import com.thoughtworks.springbootemployee.model.Employee;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"100", "10000"})
+    private int size;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private List<EmployeeResponse> employeeResponses;
+
+    @Setup
+    public void setUp() {
+        employeeResponses = new ArrayList<>(size);
+        int id = 1;
+        for (Employee employee : BenchmarkApplication.employees(size, 1)) {
+            employee.setId(id++);
+            employeeResponses.add(EmployeeMapper.convertEntityToEmployeeResponse(employee));
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeEmployeeResponses() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(employeeResponses);
+    }
+}
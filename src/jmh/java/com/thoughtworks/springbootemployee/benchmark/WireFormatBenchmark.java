@@ -0,0 +1,79 @@
+package com.thoughtworks.springbootemployee.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thoughtworks.springbootemployee.Mapper.EmployeeMapper;
+import com.thoughtworks.springbootemployee.dto.EmployeeResponse;
+import com.thoughtworks.springbootemployee.model.Employee;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// the consuming side pays for parse, so both directions are measured; payloadBytes / payloads is the payload size
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+    private static final TypeReference<List<EmployeeResponse>> EMPLOYEE_RESPONSES = new TypeReference<List<EmployeeResponse>>() {
+    };
+
+    @Param({"100", "10000"})
+    private int size;
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    private ObjectMapper objectMapper;
+    private List<EmployeeResponse> employeeResponses;
+    private byte[] payload;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Payloads {
+        public long payloads;
+        public long payloadBytes;
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        switch (format) {
+            case "cbor":
+                objectMapper = Jackson2ObjectMapperBuilder.cbor().build();
+                break;
+            case "smile":
+                objectMapper = Jackson2ObjectMapperBuilder.smile().build();
+                break;
+            default:
+                objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        }
+        employeeResponses = new ArrayList<>(size);
+        int id = 1;
+        for (Employee employee : BenchmarkApplication.employees(size, 1)) {
+            employee.setId(id++);
+            employeeResponses.add(EmployeeMapper.convertEntityToEmployeeResponse(employee));
+        }
+        payload = objectMapper.writeValueAsBytes(employeeResponses);
+    }
+
+    @Benchmark
+    public byte[] serialize(Payloads payloads) throws IOException {
+        byte[] serialized = objectMapper.writeValueAsBytes(employeeResponses);
+        payloads.payloads++;
+        payloads.payloadBytes += serialized.length;
+        return serialized;
+    }
+
+    @Benchmark
+    public List<EmployeeResponse> deserialize(Payloads payloads) throws IOException {
+        payloads.payloads++;
+        payloads.payloadBytes += payload.length;
+        return objectMapper.readValue(payload, EMPLOYEE_RESPONSES);
+    }
+}
@@ -3,18 +3,17 @@ package com.thoughtworks.springbootemployee.Mapper;
 import com.thoughtworks.springbootemployee.dto.CompanyRequest;
 import com.thoughtworks.springbootemployee.dto.CompanyResponse;
 import com.thoughtworks.springbootemployee.model.Company;
-import org.springframework.beans.BeanUtils;
 
 public class CompanyMapper {
     public static Company convertCompanyRequestToCompany(CompanyRequest companyRequest) {
-        Company company = new Company();
-        BeanUtils.copyProperties(companyRequest,company);
-        return company;
+        return new Company(companyRequest.getId(), companyRequest.getCompanyName(),
+                companyRequest.getEmployeesNumber(), companyRequest.getEmployees());
     }
 
     public static CompanyResponse convertCompanyToCompanyResponse(Company company) {
-        CompanyResponse companyResponse = new CompanyResponse();
-        BeanUtils.copyProperties(company,companyResponse);
+        CompanyResponse companyResponse = new CompanyResponse(company.getId(), company.getCompanyName(),
+                company.getEmployeesNumber(), company.getEmployees());
+        companyResponse.setVersion(company.getVersion());
         return companyResponse;
     }
 }
@@ -0,0 +1,85 @@
+package com.thoughtworks.springbootemployee.Mapper;
+
+import com.thoughtworks.springbootemployee.dto.CursorPage;
+import com.thoughtworks.springbootemployee.exception.IllegalOperationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+public class CursorMapper {
+    public static final int MAX_LIMIT = 1000;
+    private static final String PREFIX = "id:";
+    private static final String KEY_PREFIX = "key:";
+    private static final String KEY_SEPARATOR = ":";
+
+    public static String encode(Integer id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static int decode(String cursor) throws IllegalOperationException {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(PREFIX)) {
+                throw new IllegalOperationException();
+            }
+            return Integer.parseInt(decoded.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalOperationException();
+        }
+    }
+
+    // cursor for listings sorted on another field: the last row's id and its sort value
+    public static String encode(Integer id, Object sortValue) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((KEY_PREFIX + id + KEY_SEPARATOR + sortValue).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Map.Entry<Integer, String> decodeKey(String cursor) throws IllegalOperationException {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(KEY_SEPARATOR, KEY_PREFIX.length());
+            if (!decoded.startsWith(KEY_PREFIX) || separator < 0) {
+                throw new IllegalOperationException();
+            }
+            return new AbstractMap.SimpleImmutableEntry<>(
+                    Integer.parseInt(decoded.substring(KEY_PREFIX.length(), separator)),
+                    decoded.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalOperationException();
+        }
+    }
+
+    public static int checkLimit(Integer limit) throws IllegalOperationException {
+        if (limit == null || limit < 1) {
+            throw new IllegalOperationException();
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    // rows are fetched with limit + 1 so the extra row tells whether a next page exists
+    public static <E, T> CursorPage<T> toCursorPage(List<E> rows, int limit, Function<E, Integer> idOf, Function<E, T> converter) {
+        return toKeysetPage(rows, limit, row -> encode(idOf.apply(row)), converter);
+    }
+
+    public static <E, T> CursorPage<T> toKeysetPage(List<E> rows, int limit, Function<E, String> cursorOf, Function<E, T> converter) {
+        int size = Math.min(rows.size(), limit);
+        List<T> content = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            content.add(converter.apply(rows.get(i)));
+        }
+        String nextCursor = rows.size() > limit ? cursorOf.apply(rows.get(size - 1)) : null;
+        return new CursorPage<>(content, nextCursor);
+    }
+}
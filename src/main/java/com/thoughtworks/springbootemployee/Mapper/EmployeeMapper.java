@@ -3,19 +3,18 @@ package com.thoughtworks.springbootemployee.Mapper;
 import com.thoughtworks.springbootemployee.dto.EmployeeRequest;
 import com.thoughtworks.springbootemployee.dto.EmployeeResponse;
 import com.thoughtworks.springbootemployee.model.Employee;
-import org.springframework.beans.BeanUtils;
 
 public class EmployeeMapper {
 
     public static Employee convertEmployeeRequestToEntity(EmployeeRequest employeeRequest) {
-        Employee employee = new Employee();
-        BeanUtils.copyProperties(employeeRequest,employee);
-        return employee;
+        return new Employee(employeeRequest.getId(), employeeRequest.getName(), employeeRequest.getAge(),
+                employeeRequest.getGender(), employeeRequest.getSalary(), employeeRequest.getCompanyId());
     }
 
     public static EmployeeResponse convertEntityToEmployeeResponse(Employee employee) {
-        EmployeeResponse employeeResponse = new EmployeeResponse();
-        BeanUtils.copyProperties(employee,employeeResponse);
+        EmployeeResponse employeeResponse = new EmployeeResponse(employee.getId(), employee.getName(), employee.getAge(),
+                employee.getGender(), employee.getSalary(), employee.getCompanyId());
+        employeeResponse.setVersion(employee.getVersion());
         return employeeResponse;
     }
 }
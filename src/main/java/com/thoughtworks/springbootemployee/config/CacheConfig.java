@@ -0,0 +1,29 @@
+package com.thoughtworks.springbootemployee.config;
+
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableCaching
+@EnableConfigurationProperties(CacheProperties.class)
+public class CacheConfig {
+    // company responses embed their employees, so employee writes clear the whole companies cache
+    public static final String EMPLOYEES = "employees";
+    public static final String COMPANIES = "companies";
+
+    // writers evict inside their transaction; deferring the evictions to after commit keeps a rolled-back write from
+    // touching the cache and a read racing the commit from refilling it with the old row until the next write
+    @Bean
+    public CacheManager cacheManager(CacheProperties cacheProperties) {
+        CaffeineCacheManager caffeineCacheManager = new CaffeineCacheManager();
+        caffeineCacheManager.setCacheSpecification(cacheProperties.getCaffeine().getSpec());
+        caffeineCacheManager.setCacheNames(cacheProperties.getCacheNames());
+        return new TransactionAwareCacheManagerProxy(caffeineCacheManager);
+    }
+}
@@ -0,0 +1,47 @@
+package com.thoughtworks.springbootemployee.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// compression is done by a filter rather than Tomcat's server.compression, which has no level setting
+// and would deflate the same list again for every client holding a current ETag
+@Configuration
+@ConditionalOnProperty(prefix = "rest.compression", name = "enabled", havingValue = "true")
+public class CompressionConfig {
+    public static final String COMPRESSED_BODIES = "compressed-bodies";
+
+    @Bean
+    public FilterRegistrationBean<CompressionFilter> compressionFilter(MeterRegistry meterRegistry,
+                                                                      @Value("${rest.compression.min-response-size}") int minResponseSize,
+                                                                      @Value("${rest.compression.mime-types}") String[] mimeTypes,
+                                                                      @Value("${rest.compression.level}") int level,
+                                                                      @Value("${rest.compression.cache-max-bytes}") long cacheMaxBytes) {
+        Cache<String, byte[]> compressedBodies = Caffeine.newBuilder()
+                .maximumWeight(cacheMaxBytes)
+                .<String, byte[]>weigher((key, body) -> body.length)
+                .recordStats()
+                .build();
+        // same tag keys as the Spring caches, which Prometheus requires of meters sharing a name
+        CaffeineCacheMetrics.monitor(meterRegistry, compressedBodies, COMPRESSED_BODIES,
+                Tags.of("name", COMPRESSED_BODIES, "cacheManager", "compressionFilter"));
+        List<MimeType> compressibleTypes = Stream.of(mimeTypes)
+                .map(String::trim)
+                .map(MimeTypeUtils::parseMimeType)
+                .collect(Collectors.toList());
+        return new FilterRegistrationBean<>(new CompressionFilter(minResponseSize, compressibleTypes, level, compressedBodies));
+    }
+}
@@ -0,0 +1,350 @@
+package com.thoughtworks.springbootemployee.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+// buffers responses of the configured MIME types and gzips those at least minResponseSize long;
+// anything else, including streamed NDJSON and bodies written with a WriteListener, is written straight through.
+// A gzipped body is a different representation, so it gets its own strong ETag, the controller's with ETAG_SUFFIX;
+// the suffix is taken off If-None-Match and If-Match on the way in, so the controllers only ever see their own ETags
+public class CompressionFilter extends OncePerRequestFilter {
+    public static final String GZIP = "gzip";
+    public static final String ETAG_SUFFIX = "-" + GZIP;
+    private static final Pattern SUFFIXED_ETAG_END = Pattern.compile(Pattern.quote(ETAG_SUFFIX) + "\"");
+
+    private final int minResponseSize;
+    private final List<MimeType> mimeTypes;
+    private final int level;
+    // only the deflate step is cached: a hit still renders, buffers and checksums the body, and skips compressing it.
+    // A URI, representation, ETag and checksum identify the body; the checksum guards list ETags, which are read in a
+    // separate transaction from their body
+    private final Cache<String, byte[]> compressedBodies;
+
+    public CompressionFilter(int minResponseSize, List<MimeType> mimeTypes, int level, Cache<String, byte[]> compressedBodies) {
+        this.minResponseSize = minResponseSize;
+        this.mimeTypes = mimeTypes;
+        this.level = level;
+        this.compressedBodies = compressedBodies;
+    }
+
+    public static byte[] gzip(byte[] body, int level) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!acceptsGzip(request)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        CompressingResponseWrapper wrapper = WebUtils.getNativeResponse(response, CompressingResponseWrapper.class);
+        if (wrapper == null) {
+            wrapper = new CompressingResponseWrapper(response);
+        }
+        HttpServletRequest unsuffixed = WebUtils.getNativeRequest(request, UnsuffixingRequestWrapper.class);
+        if (unsuffixed == null) {
+            unsuffixed = new UnsuffixingRequestWrapper(request);
+        }
+        filterChain.doFilter(unsuffixed, wrapper);
+        // async requests finish on their last dispatch, which reaches this filter with the same wrapper
+        if (!isAsyncStarted(request)) {
+            wrapper.finish(request);
+        }
+    }
+
+    private static String suffixed(String eTag) {
+        return eTag.substring(0, eTag.length() - 1) + ETAG_SUFFIX + eTag.substring(eTag.length() - 1);
+    }
+
+    private static String unsuffixed(String eTags) {
+        return eTags == null ? null : SUFFIXED_ETAG_END.matcher(eTags).replaceAll("\"");
+    }
+
+    private static long checksum(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        return crc.getValue();
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        Enumeration<String> acceptEncodings = request.getHeaders(HttpHeaders.ACCEPT_ENCODING);
+        while (acceptEncodings.hasMoreElements()) {
+            for (String coding : acceptEncodings.nextElement().split(",")) {
+                String[] parts = coding.trim().split(";");
+                if (GZIP.equalsIgnoreCase(parts[0].trim()) && !(parts.length > 1 && parts[1].trim().matches("q=0(\\.0*)?"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        MimeType mimeType = MimeTypeUtils.parseMimeType(contentType);
+        return mimeTypes.stream().anyMatch(compressible -> compressible.includes(mimeType));
+    }
+
+    private class CompressingResponseWrapper extends HttpServletResponseWrapper {
+        private final BufferingOutputStream outputStream = new BufferingOutputStream();
+        private PrintWriter writer;
+        private ByteArrayOutputStream buffer;
+        private boolean passThrough;
+        private Long contentLength;
+
+        CompressingResponseWrapper(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(outputStream, getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void setContentLength(int length) {
+            setContentLengthLong(length);
+        }
+
+        @Override
+        public void setContentLengthLong(long length) {
+            if (passThrough) {
+                super.setContentLengthLong(length);
+            } else {
+                contentLength = length;
+            }
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (passThrough) {
+                super.flushBuffer();
+            }
+        }
+
+        @Override
+        public void resetBuffer() {
+            super.resetBuffer();
+            if (buffer != null) {
+                buffer.reset();
+            }
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            buffer = null;
+            passThrough = false;
+            contentLength = null;
+        }
+
+        private void decide() throws IOException {
+            if (passThrough || buffer != null) {
+                return;
+            }
+            if (getHeader(HttpHeaders.CONTENT_ENCODING) == null && isCompressible(getContentType())) {
+                buffer = new ByteArrayOutputStream(Math.max(minResponseSize, 1024));
+            } else {
+                passThrough();
+            }
+        }
+
+        // whatever was buffered goes out uncompressed ahead of the rest, so the body stays one identity-coded stream
+        private void passThrough() throws IOException {
+            passThrough = true;
+            if (contentLength != null) {
+                super.setContentLengthLong(contentLength);
+            }
+            if (buffer != null) {
+                byte[] buffered = buffer.toByteArray();
+                buffer = null;
+                getResponse().getOutputStream().write(buffered);
+            }
+        }
+
+        void finish(HttpServletRequest request) throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (passThrough) {
+                return;
+            }
+            HttpServletResponse response = (HttpServletResponse) getResponse();
+            String eTag = response.getHeader(HttpHeaders.ETAG);
+            if (response.getStatus() == HttpServletResponse.SC_NOT_MODIFIED && eTag != null && eTag.endsWith("\"")) {
+                // a client revalidating its gzipped copy gets that copy's ETag back
+                Enumeration<String> ifNoneMatch = request.getHeaders(HttpHeaders.IF_NONE_MATCH);
+                while (ifNoneMatch.hasMoreElements()) {
+                    if (ifNoneMatch.nextElement().contains(suffixed(eTag))) {
+                        response.setHeader(HttpHeaders.ETAG, suffixed(eTag));
+                        break;
+                    }
+                }
+            }
+            if (buffer == null) {
+                if (contentLength != null) {
+                    response.setContentLengthLong(contentLength);
+                }
+                return;
+            }
+            // the body differs with Accept-Encoding from here on
+            if (!containsVaryAcceptEncoding(response.getHeaders(HttpHeaders.VARY))) {
+                response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            }
+            byte[] body = buffer.toByteArray();
+            if (body.length < minResponseSize || response.getStatus() != HttpServletResponse.SC_OK) {
+                response.setContentLength(body.length);
+                response.getOutputStream().write(body);
+                return;
+            }
+            byte[] compressed = eTag == null
+                    ? gzip(body, level)
+                    : compressedBodies.get(cacheKey(request, eTag, body), key -> gzip(body, level));
+            if (eTag != null && eTag.endsWith("\"")) {
+                response.setHeader(HttpHeaders.ETAG, suffixed(eTag));
+            }
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+            response.setContentLength(compressed.length);
+            response.getOutputStream().write(compressed);
+        }
+
+        private String cacheKey(HttpServletRequest request, String eTag, byte[] body) {
+            String query = request.getQueryString();
+            return request.getRequestURI() + (query == null ? "" : "?" + query) + " " + getContentType() + " " + eTag
+                    + " " + body.length + " " + Long.toHexString(checksum(body));
+        }
+
+        private boolean containsVaryAcceptEncoding(Collection<String> varies) {
+            return varies.stream().anyMatch(vary -> vary.toLowerCase().contains(HttpHeaders.ACCEPT_ENCODING.toLowerCase()));
+        }
+
+        private class BufferingOutputStream extends ServletOutputStream {
+            @Override
+            public void write(int b) throws IOException {
+                decide();
+                if (passThrough) {
+                    getResponse().getOutputStream().write(b);
+                } else {
+                    buffer.write(b);
+                }
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                decide();
+                if (passThrough) {
+                    getResponse().getOutputStream().write(b, off, len);
+                } else {
+                    buffer.write(b, off, len);
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (passThrough) {
+                    getResponse().getOutputStream().flush();
+                }
+            }
+
+            @Override
+            public boolean isReady() {
+                try {
+                    return !passThrough || getResponse().getOutputStream().isReady();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            // a non-blocking writer only writes when the container says it can, which a buffered body never would
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                try {
+                    if (!passThrough) {
+                        passThrough();
+                    }
+                    getResponse().getOutputStream().setWriteListener(writeListener);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    private static class UnsuffixingRequestWrapper extends HttpServletRequestWrapper {
+
+        UnsuffixingRequestWrapper(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return isPrecondition(name) ? unsuffixed(super.getHeader(name)) : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            if (!isPrecondition(name)) {
+                return super.getHeaders(name);
+            }
+            return Collections.enumeration(Collections.list(super.getHeaders(name)).stream()
+                    .map(CompressionFilter::unsuffixed)
+                    .collect(Collectors.toList()));
+        }
+
+        private static boolean isPrecondition(String name) {
+            return HttpHeaders.IF_NONE_MATCH.equalsIgnoreCase(name) || HttpHeaders.IF_MATCH.equalsIgnoreCase(name);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.thoughtworks.springbootemployee.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+// Both pools are built inside the one DataSource bean: separate pool beans behind a @Primary router form a cycle
+// with Spring Boot's DataSource initializer.
+@Configuration
+public class DataSourceConfig {
+
+    // NDJSON imports and exports hold a connection for the whole stream, paced by the client rather than the CPU, and
+    // the write-behind writer and the employees-number rebuild each hold one while they run; on one or two cores the
+    // rule of thumb leaves two to four, which those alone can take from request traffic, so a few mostly idle extra
+    // connections are the cheaper cost
+    public static final int MIN_POOL_SIZE = 10;
+
+    // HikariCP's rule of thumb: past cores * 2 + spindles, connections queue for CPU or disk instead of working
+    public static int poolSize(int cores, int effectiveSpindles) {
+        return Math.max(MIN_POOL_SIZE, cores * 2 + effectiveSpindles);
+    }
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties, Environment environment,
+                                 @Value("${datasource.pool.effective-spindles}") int effectiveSpindles,
+                                 @Value("${datasource.replica.url:}") String replicaUrl,
+                                 @Value("${datasource.replica.sticky-ms}") long stickyMillis) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        int size = poolSize(Runtime.getRuntime().availableProcessors(), effectiveSpindles);
+        dataSource.setMaximumPoolSize(size);
+        dataSource.setMinimumIdle(size);
+        // bound after the derived size is set, so an explicit maximum-pool-size still wins
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+        if (replicaUrl.isEmpty()) {
+            return dataSource;
+        }
+        HikariDataSource replicaDataSource = new HikariDataSource();
+        dataSource.copyStateTo(replicaDataSource);
+        replicaDataSource.setJdbcUrl(replicaUrl);
+        replicaDataSource.setPoolName(dataSource.getPoolName() + "-replica");
+        replicaDataSource.setReadOnly(true);
+        ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource(dataSource, replicaDataSource, stickyMillis);
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    // Spring Boot binds pool metrics for the pool it can unwrap from the DataSource bean, which is the primary
+    @Bean
+    @ConditionalOnProperty(prefix = "datasource.replica", name = "url")
+    public MeterBinder replicaPoolMetrics(DataSource dataSource) {
+        DataSource routingDataSource = ((LazyConnectionDataSourceProxy) dataSource).getTargetDataSource();
+        HikariDataSource replicaDataSource = ((ReplicaRoutingDataSource) routingDataSource).getReplica();
+        return registry -> {
+            if (replicaDataSource.getMetricsTrackerFactory() == null) {
+                replicaDataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+            }
+        };
+    }
+}
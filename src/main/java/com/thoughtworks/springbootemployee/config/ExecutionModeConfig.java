@@ -0,0 +1,80 @@
+package com.thoughtworks.springbootemployee.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcRegistrations;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+// rest.execution-mode=offload runs controller methods on a bounded JDBC executor instead of Tomcat request threads,
+// so requests waiting on the database no longer cap how many connections Tomcat can keep in flight
+@Configuration
+@ConditionalOnProperty(prefix = "rest", name = "execution-mode", havingValue = "offload")
+public class ExecutionModeConfig implements WebMvcConfigurer {
+
+    private final int threads;
+    private final int queueCapacity;
+    private final long timeoutMillis;
+    private final TaskExecutorBuilder taskExecutorBuilder;
+
+    public ExecutionModeConfig(DataSource dataSource,
+                               @Value("${rest.jdbc-executor.threads:0}") int threads,
+                               @Value("${rest.jdbc-executor.queue-capacity}") int queueCapacity,
+                               @Value("${rest.jdbc-executor.timeout-ms}") long timeoutMillis,
+                               TaskExecutorBuilder taskExecutorBuilder) throws SQLException {
+        this.threads = threads > 0 ? threads : dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+        this.queueCapacity = queueCapacity;
+        this.timeoutMillis = timeoutMillis;
+        this.taskExecutorBuilder = taskExecutorBuilder;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor jdbcExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        // admission is bounded by the handler adapter; the queue itself is not, because tasks cancelled by a timeout
+        // stay queued until a thread skips them and would otherwise make the executor reject admitted requests
+        executor.setQueueCapacity(Integer.MAX_VALUE);
+        executor.setThreadNamePrefix("jdbc-");
+        return executor;
+    }
+
+    // NDJSON streams and other handlers that are already async run here, as they do in blocking mode,
+    // so a long download never takes a JDBC executor thread from the offloaded requests
+    @Bean
+    public ThreadPoolTaskExecutor streamingExecutor() {
+        return taskExecutorBuilder.threadNamePrefix("stream-").build();
+    }
+
+    @Bean
+    public WebMvcRegistrations offloadingRegistrations(MeterRegistry meterRegistry) {
+        OffloadingRequestMappingHandlerAdapter adapter = new OffloadingRequestMappingHandlerAdapter(jdbcExecutor(), threads + queueCapacity);
+        Gauge.builder("http.server.requests.offloaded", adapter, OffloadingRequestMappingHandlerAdapter::getInFlight)
+                .description("Requests handed to the JDBC executor and not yet completed")
+                .register(meterRegistry);
+        return new WebMvcRegistrations() {
+            @Override
+            public RequestMappingHandlerAdapter getRequestMappingHandlerAdapter() {
+                return adapter;
+            }
+        };
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(streamingExecutor());
+        configurer.setDefaultTimeout(timeoutMillis);
+    }
+}
@@ -1,15 +1,27 @@
 package com.thoughtworks.springbootemployee.config;
 
+import com.thoughtworks.springbootemployee.exception.ExecutorSaturatedException;
 import com.thoughtworks.springbootemployee.exception.IllegalOperationException;
+import com.thoughtworks.springbootemployee.exception.MalformedImportException;
 import com.thoughtworks.springbootemployee.exception.NoSuchDataException;
+import com.thoughtworks.springbootemployee.exception.WriteQueueFullException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+
 @ControllerAdvice
 public class GlobalExceptionHandler {
 
     public static final String NOT_SUCH_DATA = "not such data";
     public static final String ILLEGAL_OPERATION_EXCEPTION = "IllegalOperationException";
+    public static final String VERSION_MISMATCH = "version mismatch";
+    public static final String WRITE_QUEUE_FULL = "write queue full";
+    public static final String EXECUTOR_SATURATED = "executor saturated";
+    public static final String MALFORMED_IMPORT = "malformed employee at line ";
+    private static final String RETRY_AFTER_SECONDS = "1";
 
     @ResponseBody
     @ResponseStatus(HttpStatus.NOT_FOUND)
@@ -25,4 +37,35 @@ public class GlobalExceptionHandler {
     String handleIllegalOperationException(){
         return ILLEGAL_OPERATION_EXCEPTION;
     }
+
+    @ResponseBody
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(MalformedImportException.class)
+    String handleMalformedImportException(MalformedImportException e) {
+        return MALFORMED_IMPORT + e.getLine();
+    }
+
+    // raised for a stale If-Match as well as for a concurrent write caught by @Version at flush
+    @ResponseBody
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    String handleOptimisticLockingFailureException() {
+        return VERSION_MISMATCH;
+    }
+
+    @ResponseBody
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ExceptionHandler(WriteQueueFullException.class)
+    String handleWriteQueueFullException(HttpServletResponse response) {
+        response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        return WRITE_QUEUE_FULL;
+    }
+
+    @ResponseBody
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ExceptionHandler(ExecutorSaturatedException.class)
+    String handleExecutorSaturatedException(HttpServletResponse response) {
+        response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        return EXECUTOR_SATURATED;
+    }
 }
@@ -0,0 +1,29 @@
+package com.thoughtworks.springbootemployee.config;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.thoughtworks.springbootemployee.controller.SparseFields;
+import com.thoughtworks.springbootemployee.dto.CompanyResponse;
+import com.thoughtworks.springbootemployee.dto.EmployeeResponse;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// the filter is attached through a mix-in, so the DTOs stay plain for mappers built outside Boot;
+// Boot's mappers, including the binary ones, write every property unless a response narrows them
+@Configuration
+public class JacksonConfig {
+
+    @JsonFilter(SparseFields.FILTER)
+    interface SparseFieldsMixIn {
+    }
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer sparseFieldsCustomizer() {
+        return builder -> builder
+                .mixIn(EmployeeResponse.class, SparseFieldsMixIn.class)
+                .mixIn(CompanyResponse.class, SparseFieldsMixIn.class)
+                .filters(new SimpleFilterProvider().setDefaultFilter(SimpleBeanPropertyFilter.serializeAll()));
+    }
+}
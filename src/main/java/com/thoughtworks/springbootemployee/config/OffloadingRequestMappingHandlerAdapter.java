@@ -0,0 +1,77 @@
+package com.thoughtworks.springbootemployee.config;
+
+import com.thoughtworks.springbootemployee.exception.ExecutorSaturatedException;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.ServletInvocableHandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Arguments are resolved on the container thread; the controller method, and so its JDBC work, runs on the
+// JDBC executor while the container thread goes back to the pool. Spring MVC dispatches the result again.
+public class OffloadingRequestMappingHandlerAdapter extends RequestMappingHandlerAdapter {
+
+    private final AsyncTaskExecutor executor;
+    private final int maxInFlight;
+    private final Semaphore permits;
+
+    public OffloadingRequestMappingHandlerAdapter(AsyncTaskExecutor executor, int maxInFlight) {
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+    }
+
+    @Override
+    protected ServletInvocableHandlerMethod createInvocableHandlerMethod(HandlerMethod handlerMethod) {
+        if (!isOffloadable(handlerMethod)) {
+            return super.createInvocableHandlerMethod(handlerMethod);
+        }
+        return new ServletInvocableHandlerMethod(handlerMethod) {
+            @Override
+            public Object invokeForRequest(NativeWebRequest request, ModelAndViewContainer mavContainer, Object... providedArgs) throws Exception {
+                Object[] args = getMethodArgumentValues(request, mavContainer, providedArgs);
+                // bounding admission here keeps the executor from ever rejecting, which Spring MVC would report twice
+                if (!permits.tryAcquire()) {
+                    throw new ExecutorSaturatedException();
+                }
+                // the permit is returned when the async request completes, not when the task ends: a task cancelled
+                // by a timeout or a client disconnect before it starts never runs, and a rejected one never starts
+                AtomicBoolean released = new AtomicBoolean();
+                WebAsyncTask<Object> task = new WebAsyncTask<>(null, executor, () -> doInvoke(args));
+                task.onCompletion(() -> {
+                    if (released.compareAndSet(false, true)) {
+                        permits.release();
+                    }
+                });
+                return task;
+            }
+        };
+    }
+
+    public int getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    private static boolean isOffloadable(HandlerMethod handlerMethod) {
+        Class<?> returnType = handlerMethod.getReturnType().getParameterType();
+        boolean alreadyAsync = Callable.class.isAssignableFrom(returnType)
+                || WebAsyncTask.class.isAssignableFrom(returnType)
+                || DeferredResult.class.isAssignableFrom(returnType)
+                || CompletionStage.class.isAssignableFrom(returnType)
+                || ResponseBodyEmitter.class.isAssignableFrom(returnType)
+                || StreamingResponseBody.class.isAssignableFrom(returnType);
+        return !alreadyAsync && AnnotatedElementUtils.hasAnnotation(handlerMethod.getBeanType(), RestController.class);
+    }
+}
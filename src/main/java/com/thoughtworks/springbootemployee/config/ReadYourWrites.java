@@ -0,0 +1,57 @@
+package com.thoughtworks.springbootemployee.config;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+
+// When the client issuing one HTTP request last had a write committed, carried between its requests in a cookie, so
+// its reads stay on the primary for the sticky window while every other client keeps reading the replica. Bound to
+// whichever thread is working on the request, the same way as SqlRequestMetrics.
+public class ReadYourWrites {
+    public static final String COOKIE = "last-write";
+    public static final String ATTRIBUTE = ReadYourWrites.class.getName();
+    private static final ThreadLocal<ReadYourWrites> CURRENT = new ThreadLocal<>();
+
+    private final HttpServletResponse response;
+    private final int cookieMaxAgeSeconds;
+    private volatile long lastWriteMillis;
+
+    public ReadYourWrites(HttpServletResponse response, int cookieMaxAgeSeconds, long lastWriteMillis) {
+        this.response = response;
+        this.cookieMaxAgeSeconds = cookieMaxAgeSeconds;
+        this.lastWriteMillis = lastWriteMillis;
+    }
+
+    static ReadYourWrites current() {
+        return CURRENT.get();
+    }
+
+    static ReadYourWrites bind(ReadYourWrites readYourWrites) {
+        ReadYourWrites previous = CURRENT.get();
+        CURRENT.set(readYourWrites);
+        return previous;
+    }
+
+    static void restore(ReadYourWrites previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    public long getLastWriteMillis() {
+        return lastWriteMillis;
+    }
+
+    // wall-clock time, since the cookie's next request may be served by another instance
+    void written(long writeMillis) {
+        lastWriteMillis = writeMillis;
+        if (!response.isCommitted()) {
+            Cookie cookie = new Cookie(COOKIE, Long.toString(writeMillis));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge(cookieMaxAgeSeconds);
+            response.addCookie(cookie);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.thoughtworks.springbootemployee.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.Callable;
+
+@Configuration
+@ConditionalOnProperty(prefix = "datasource.replica", name = "url")
+public class ReadYourWritesConfig implements WebMvcConfigurer {
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(@Value("${datasource.replica.sticky-ms}") long stickyMillis) {
+        return new FilterRegistrationBean<>(new ReadYourWritesFilter(stickyMillis));
+    }
+
+    // offloaded handlers run their transactions on executor threads, so the client's last write follows them there
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+                ReadYourWrites.bind((ReadYourWrites) request.getAttribute(ReadYourWrites.ATTRIBUTE, RequestAttributes.SCOPE_REQUEST));
+            }
+
+            @Override
+            public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+                ReadYourWrites.restore(null);
+            }
+        });
+    }
+}
@@ -0,0 +1,48 @@
+package com.thoughtworks.springbootemployee.config;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// reads the client's last write from its cookie; ReplicaRoutingDataSource keeps that client on the primary after it
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    private static final long NO_WRITE = 0;
+
+    private final int cookieMaxAgeSeconds;
+
+    public ReadYourWritesFilter(long stickyMillis) {
+        this.cookieMaxAgeSeconds = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(stickyMillis + 999));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ReadYourWrites readYourWrites = new ReadYourWrites(response, cookieMaxAgeSeconds, lastWriteMillis(request));
+        request.setAttribute(ReadYourWrites.ATTRIBUTE, readYourWrites);
+        ReadYourWrites previous = ReadYourWrites.bind(readYourWrites);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReadYourWrites.restore(previous);
+        }
+    }
+
+    private static long lastWriteMillis(HttpServletRequest request) {
+        Cookie cookie = WebUtils.getCookie(request, ReadYourWrites.COOKIE);
+        if (cookie == null) {
+            return NO_WRITE;
+        }
+        try {
+            return Long.parseLong(cookie.getValue());
+        } catch (NumberFormatException e) {
+            return NO_WRITE;
+        }
+    }
+}
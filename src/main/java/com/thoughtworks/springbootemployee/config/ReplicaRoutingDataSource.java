@@ -0,0 +1,57 @@
+package com.thoughtworks.springbootemployee.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Read-only transactions go to the replica, everything else to the primary. After a client's write commits, that
+// client's reads stay on the primary for the sticky window so it never reads a replica that has not caught up with its
+// own write; other clients, and work outside a request, keep reading the replica. See ReadYourWrites.
+// The key is read when a connection is first used, so this must sit behind a LazyConnectionDataSourceProxy:
+// the transaction's read-only flag is only bound after the transaction manager has asked for a connection.
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    public static final String PRIMARY = "primary";
+    public static final String REPLICA = "replica";
+
+    private final HikariDataSource replica;
+    private final long stickyMillis;
+
+    public ReplicaRoutingDataSource(HikariDataSource primary, HikariDataSource replica, long stickyMillis) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        targets.put(REPLICA, replica);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        this.replica = replica;
+        this.stickyMillis = stickyMillis;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        ReadYourWrites client = ReadYourWrites.current();
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return client != null && isPrimarySticky(client) ? PRIMARY : REPLICA;
+        }
+        if (client != null && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    client.written(System.currentTimeMillis());
+                }
+            });
+        }
+        return PRIMARY;
+    }
+
+    public HikariDataSource getReplica() {
+        return replica;
+    }
+
+    public boolean isPrimarySticky(ReadYourWrites client) {
+        return System.currentTimeMillis() - client.getLastWriteMillis() < stickyMillis;
+    }
+}
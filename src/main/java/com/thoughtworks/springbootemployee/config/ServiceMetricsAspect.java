@@ -0,0 +1,51 @@
+package com.thoughtworks.springbootemployee.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+@Aspect
+@Component
+public class ServiceMetricsAspect {
+    public static final String SERVICE_METHOD = "service.method";
+
+    private final MeterRegistry meterRegistry;
+    // timers are built once per method so a call skips the registry's lookup; a plain get keeps the common path free
+    // of the capturing computeIfAbsent lambda
+    private final Map<Method, Timer> timers = new ConcurrentHashMap<>();
+
+    public ServiceMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * com.thoughtworks.springbootemployee.service..*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Timer timer = timers.get(method);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(method, this::timerOf);
+        }
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer timerOf(Method method) {
+        return Timer.builder(SERVICE_METHOD)
+                .tag("class", method.getDeclaringClass().getSimpleName())
+                .tag("method", method.getName())
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,44 @@
+package com.thoughtworks.springbootemployee.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.Callable;
+
+@Configuration
+public class SqlMetricsConfig implements WebMvcConfigurer {
+
+    @Bean
+    public FilterRegistrationBean<SqlRequestMetricsFilter> sqlRequestMetricsFilter(MeterRegistry meterRegistry) {
+        return new FilterRegistrationBean<>(new SqlRequestMetricsFilter(meterRegistry));
+    }
+
+    @Bean
+    public MeterBinder sqlStatementsMetrics() {
+        return SqlMetricsSessionListener::bindTo;
+    }
+
+    // offloaded handlers and NDJSON streams run their SQL on executor threads, so the request's tally follows them there
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+                SqlRequestMetrics.bind((SqlRequestMetrics) request.getAttribute(SqlRequestMetrics.ATTRIBUTE, RequestAttributes.SCOPE_REQUEST));
+            }
+
+            @Override
+            public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+                SqlRequestMetrics.restore(null);
+            }
+        });
+    }
+}
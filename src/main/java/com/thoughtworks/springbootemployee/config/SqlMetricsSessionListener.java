@@ -0,0 +1,53 @@
+package com.thoughtworks.springbootemployee.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.BaseSessionEventListener;
+
+import java.util.concurrent.TimeUnit;
+
+// Hibernate creates one listener per session, and with open-in-view off a session spans one transaction, so a request
+// can open several; each statement is also added to the tally of the request it runs for, see SqlRequestMetrics
+public class SqlMetricsSessionListener extends BaseSessionEventListener {
+    public static final String STATEMENTS = "sql.statements";
+
+    // Hibernate builds listeners from the class name, so the application's registry reaches them through SqlMetricsConfig
+    private static volatile Timer statements;
+
+    private long statementStart;
+
+    static void bindTo(MeterRegistry meterRegistry) {
+        statements = Timer.builder(STATEMENTS)
+                .description("JDBC statement execution time")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        statementStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        recordStatement();
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        statementStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        recordStatement();
+    }
+
+    private void recordStatement() {
+        long elapsed = System.nanoTime() - statementStart;
+        Timer timer = statements;
+        if (timer != null) {
+            timer.record(elapsed, TimeUnit.NANOSECONDS);
+        }
+        SqlRequestMetrics.recordStatement(elapsed);
+    }
+}
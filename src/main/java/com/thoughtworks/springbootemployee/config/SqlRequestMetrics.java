@@ -0,0 +1,44 @@
+package com.thoughtworks.springbootemployee.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// The SQL one HTTP request has issued, summed over every session it opened. The tally is bound to whichever thread
+// is working on the request: the container thread by SqlRequestMetricsFilter, an async executor thread by the
+// callable interceptor SqlMetricsConfig registers.
+public class SqlRequestMetrics {
+    public static final String ATTRIBUTE = SqlRequestMetrics.class.getName();
+    private static final ThreadLocal<SqlRequestMetrics> CURRENT = new ThreadLocal<>();
+
+    private final AtomicLong statements = new AtomicLong();
+    private final AtomicLong nanos = new AtomicLong();
+
+    static void recordStatement(long elapsedNanos) {
+        SqlRequestMetrics current = CURRENT.get();
+        if (current != null) {
+            current.statements.incrementAndGet();
+            current.nanos.addAndGet(elapsedNanos);
+        }
+    }
+
+    static SqlRequestMetrics bind(SqlRequestMetrics metrics) {
+        SqlRequestMetrics previous = CURRENT.get();
+        CURRENT.set(metrics);
+        return previous;
+    }
+
+    static void restore(SqlRequestMetrics previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    public long getStatements() {
+        return statements.get();
+    }
+
+    public long getNanos() {
+        return nanos.get();
+    }
+}
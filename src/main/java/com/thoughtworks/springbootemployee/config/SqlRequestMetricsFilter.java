@@ -0,0 +1,90 @@
+package com.thoughtworks.springbootemployee.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.actuate.metrics.web.servlet.WebMvcTags;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// records each request's SQL tally under the uri tag http.server.requests uses, once the request is complete:
+// after the filter chain returns, or for an async request when the container completes it
+public class SqlRequestMetricsFilter extends OncePerRequestFilter {
+    public static final String STATEMENTS = "sql.request.statements";
+    public static final String TIME = "sql.request.time";
+
+    private final MeterRegistry meterRegistry;
+    // meters are built once per uri so a request skips the registry's lookup; the uri tag itself is still resolved per request
+    private final Map<String, DistributionSummary> statementsByUri = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timeByUri = new ConcurrentHashMap<>();
+
+    public SqlRequestMetricsFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        SqlRequestMetrics metrics = new SqlRequestMetrics();
+        request.setAttribute(SqlRequestMetrics.ATTRIBUTE, metrics);
+        SqlRequestMetrics previous = SqlRequestMetrics.bind(metrics);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            SqlRequestMetrics.restore(previous);
+            if (isAsyncStarted(request)) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        record(request, response, metrics);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                record(request, response, metrics);
+            }
+        }
+    }
+
+    private void record(HttpServletRequest request, HttpServletResponse response, SqlRequestMetrics metrics) {
+        Tag uri = WebMvcTags.uri(request, response);
+        DistributionSummary statements = statementsByUri.get(uri.getValue());
+        if (statements == null) {
+            statements = statementsByUri.computeIfAbsent(uri.getValue(), value -> DistributionSummary.builder(STATEMENTS)
+                    .description("JDBC statements executed per request")
+                    .tags(uri.getKey(), value)
+                    .register(meterRegistry));
+        }
+        Timer time = timeByUri.get(uri.getValue());
+        if (time == null) {
+            time = timeByUri.computeIfAbsent(uri.getValue(), value -> Timer.builder(TIME)
+                    .description("JDBC execution time per request")
+                    .tags(uri.getKey(), value)
+                    .register(meterRegistry));
+        }
+        statements.record(metrics.getStatements());
+        time.record(metrics.getNanos(), TimeUnit.NANOSECONDS);
+    }
+}
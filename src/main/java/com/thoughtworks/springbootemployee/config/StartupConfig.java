@@ -0,0 +1,44 @@
+package com.thoughtworks.springbootemployee.config;
+
+import com.thoughtworks.springbootemployee.service.CompanyService;
+import com.thoughtworks.springbootemployee.service.EmployeeWriteBehindService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.flyway.FlywayProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class StartupConfig {
+    public static final String FAST_STARTUP = "fast-startup";
+
+    // static so the processor is registered before the beans it times are created
+    @Bean
+    @ConditionalOnProperty(prefix = "startup.timeline", name = "enabled", havingValue = "true")
+    public static StartupTimeline startupTimeline(@Value("${startup.timeline.top:20}") int top) {
+        return new StartupTimeline(top);
+    }
+
+    // application-fast-startup.yml makes every bean lazy; these are the ones that must still start with the application
+    @Configuration
+    @Profile(FAST_STARTUP)
+    static class FastStartupConfig {
+
+        // the nightly employees_number rebuild is only scheduled once CompanyService exists,
+        // and journalled write-behind entries are replayed when its service starts
+        @Bean
+        public static LazyInitializationExcludeFilter eagerBeans() {
+            return LazyInitializationExcludeFilter.forBeanTypes(CompanyService.class, EmployeeWriteBehindService.class);
+        }
+
+        @Bean
+        public FlywayMigrationStrategy checksumGatedMigration(DataSource dataSource, FlywayProperties flywayProperties) {
+            return new ChecksumGatedMigrationStrategy(dataSource, flywayProperties.getLocations());
+        }
+    }
+}
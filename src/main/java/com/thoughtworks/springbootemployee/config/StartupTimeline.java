@@ -0,0 +1,186 @@
+package com.thoughtworks.springbootemployee.config;
+
+import org.flywaydb.core.api.MigrationInfo;
+import org.flywaydb.core.api.callback.Callback;
+import org.flywaydb.core.api.callback.Context;
+import org.flywaydb.core.api.callback.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.PriorityOrdered;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// times every bean created and every Flyway migration applied until the application is ready, then logs the slowest;
+// a bean's self time leaves out the dependencies created while it was being built, so the cost lands where it is spent
+public class StartupTimeline implements InstantiationAwareBeanPostProcessor, PriorityOrdered, Callback,
+        ApplicationListener<ApplicationReadyEvent> {
+    public static final String BEAN = "bean";
+    public static final String MIGRATION = "migration";
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupTimeline.class);
+
+    private final int top;
+    private final long startNanos = System.nanoTime();
+    private final List<Step> steps = Collections.synchronizedList(new ArrayList<>());
+    // beans are built depth first on whichever thread asked for them, so each thread keeps its own stack
+    private final ThreadLocal<Deque<Frame>> creating = ThreadLocal.withInitial(ArrayDeque::new);
+    private final Map<String, Long> migrationStarts = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    public StartupTimeline(int top) {
+        this.top = top;
+    }
+
+    public List<Step> getSteps() {
+        synchronized (steps) {
+            return new ArrayList<>(steps);
+        }
+    }
+
+    public List<Step> getSteps(String type) {
+        return getSteps().stream().filter(step -> step.getType().equals(type)).collect(Collectors.toList());
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public Object postProcessBeforeInstantiation(Class<?> beanClass, String beanName) {
+        if (!ready) {
+            creating.get().push(new Frame(beanName, System.nanoTime()));
+        }
+        return null;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        Deque<Frame> frames = creating.get();
+        if (ready || frames.stream().noneMatch(frame -> frame.name.equals(beanName))) {
+            // factory bean products and beans created before this processor was registered have no frame
+            return bean;
+        }
+        Frame frame = frames.pop();
+        while (!frame.name.equals(beanName)) {
+            frame = frames.pop();
+        }
+        long duration = System.nanoTime() - frame.startNanos;
+        Frame parent = frames.peek();
+        if (parent != null) {
+            parent.childNanos += duration;
+        }
+        steps.add(new Step(BEAN, beanName, frame.startNanos - startNanos, duration, duration - frame.childNanos));
+        return bean;
+    }
+
+    @Override
+    public boolean supports(Event event, Context context) {
+        return event == Event.BEFORE_EACH_MIGRATE || event == Event.AFTER_EACH_MIGRATE || event == Event.AFTER_EACH_MIGRATE_ERROR;
+    }
+
+    @Override
+    public boolean canHandleInTransaction(Event event, Context context) {
+        return true;
+    }
+
+    @Override
+    public void handle(Event event, Context context) {
+        MigrationInfo migration = context.getMigrationInfo();
+        String name = migration.getVersion() + " " + migration.getDescription();
+        if (event == Event.BEFORE_EACH_MIGRATE) {
+            migrationStarts.put(name, System.nanoTime());
+            return;
+        }
+        Long migrationStart = migrationStarts.remove(name);
+        if (migrationStart != null) {
+            long duration = System.nanoTime() - migrationStart;
+            steps.add(new Step(MIGRATION, name, migrationStart - startNanos, duration, duration));
+        }
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        ready = true;
+        List<Step> beans = getSteps(BEAN);
+        List<Step> migrations = getSteps(MIGRATION);
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("startup took %d ms: %d beans created, %d migrations applied%n",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), beans.size(), migrations.size()));
+        for (Step migration : migrations) {
+            report.append(String.format("  %s%n", migration));
+        }
+        beans.sort(Comparator.comparingLong(Step::getSelfNanos).reversed());
+        Iterator<Step> slowest = beans.iterator();
+        for (int i = 0; i < top && slowest.hasNext(); i++) {
+            report.append(String.format("  %s%n", slowest.next()));
+        }
+        LOGGER.info(report.toString().trim());
+    }
+
+    private static class Frame {
+        private final String name;
+        private final long startNanos;
+        private long childNanos;
+
+        Frame(String name, long startNanos) {
+            this.name = name;
+            this.startNanos = startNanos;
+        }
+    }
+
+    public static class Step {
+        private final String type;
+        private final String name;
+        private final long offsetNanos;
+        private final long durationNanos;
+        private final long selfNanos;
+
+        public Step(String type, String name, long offsetNanos, long durationNanos, long selfNanos) {
+            this.type = type;
+            this.name = name;
+            this.offsetNanos = offsetNanos;
+            this.durationNanos = durationNanos;
+            this.selfNanos = selfNanos;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getOffsetNanos() {
+            return offsetNanos;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        public long getSelfNanos() {
+            return selfNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("+%6d ms %-9s %6.1f ms self %6.1f ms total  %s", TimeUnit.NANOSECONDS.toMillis(offsetNanos), type,
+                    selfNanos / 1e6, durationNanos / 1e6, name);
+        }
+    }
+}
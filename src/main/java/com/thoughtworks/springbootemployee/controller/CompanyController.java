@@ -1,32 +1,47 @@
 package com.thoughtworks.springbootemployee.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.thoughtworks.springbootemployee.Mapper.CompanyMapper;
 import com.thoughtworks.springbootemployee.dto.CompanyRequest;
 import com.thoughtworks.springbootemployee.dto.CompanyResponse;
+import com.thoughtworks.springbootemployee.dto.CursorPage;
 import com.thoughtworks.springbootemployee.dto.EmployeeResponse;
 import com.thoughtworks.springbootemployee.exception.IllegalOperationException;
 import com.thoughtworks.springbootemployee.exception.NoSuchDataException;
 import com.thoughtworks.springbootemployee.model.Company;
 import com.thoughtworks.springbootemployee.service.CompanyService;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/companies")
 public class CompanyController {
 
     private final CompanyService service;
+    private final ObjectMapper objectMapper;
 
-    public CompanyController(CompanyService service) {
+    public CompanyController(CompanyService service, ObjectMapper objectMapper) {
         this.service = service;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
-    public List<CompanyResponse> getAll() {
-        return service.getAll();
+    public ResponseEntity<?> getAll(@RequestParam(required = false) String fields, WebRequest request) throws IllegalOperationException {
+        Set<String> requested = SparseFields.parse(fields, SparseFields.COMPANY_FIELDS);
+        String eTag = ETags.of(service.getCompaniesFingerprint(), request);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        List<CompanyResponse> companies = withEmployees(requested) ? service.getAll() : service.getAllWithoutEmployees();
+        return ResponseEntity.ok().eTag(eTag).body(SparseFields.narrow(companies, requested));
     }
 
     @GetMapping(params = {"page", "pageSize"})
@@ -34,14 +49,63 @@ public class CompanyController {
         return service.getCompaniesByPage(page, pageSize);
     }
 
+    @GetMapping(params = {"limit"})
+    public CursorPage<CompanyResponse> getAllAfter(@RequestParam(required = false) String after, Integer limit) throws IllegalOperationException {
+        return service.getCompaniesAfter(after, limit);
+    }
+
     @GetMapping("/{companyId}")
-    public CompanyResponse getCompanyByCompanyId(@PathVariable Integer companyId) {
-        return service.getCompanyById(companyId);
+    public ResponseEntity<?> getCompanyByCompanyId(@PathVariable Integer companyId, @RequestParam(required = false) String fields,
+                                                   WebRequest request) throws NoSuchDataException, IllegalOperationException {
+        Set<String> requested = SparseFields.parse(fields, SparseFields.COMPANY_FIELDS);
+        Integer version = service.getCompanyVersion(companyId);
+        if (version == null) {
+            throw new NoSuchDataException();
+        }
+        if (request.checkNotModified(ETags.of(version, request))) {
+            return null;
+        }
+        CompanyResponse company;
+        if (withEmployees(requested)) {
+            company = service.getCompanyById(companyId);
+            if (company == null || !version.equals(company.getVersion())) {
+                company = service.reloadCompanyById(companyId);
+            }
+        } else {
+            company = service.getCompanyWithoutEmployeesById(companyId);
+        }
+        if (company == null) {
+            throw new NoSuchDataException();
+        }
+        return ResponseEntity.ok().eTag(ETags.of(company.getVersion(), request)).body(SparseFields.narrow(company, requested));
     }
 
     @GetMapping("/{companyId}/employees")
-    public List<EmployeeResponse> getAllEmployeesByCompanyId(@PathVariable Integer companyId) {
-        return service.getEmployeesByCompanyId(companyId);
+    public Object getAllEmployeesByCompanyId(@PathVariable Integer companyId, @RequestParam(required = false) String fields) throws IllegalOperationException {
+        Set<String> requested = SparseFields.parse(fields, SparseFields.EMPLOYEE_FIELDS);
+        if (requested == null) {
+            return service.getEmployeesByCompanyId(companyId);
+        }
+        return SparseFields.narrow(service.getEmployeesByCompanyId(companyId, requested), requested);
+    }
+
+    @GetMapping(value = "/{companyId}/employees", params = {"page", "pageSize"})
+    public Page<EmployeeResponse> getEmployeesByCompanyIdByPage(@PathVariable Integer companyId, Integer page, Integer pageSize) {
+        return service.getEmployeesByCompanyId(companyId, page, pageSize);
+    }
+
+    @GetMapping(value = "/{companyId}/employees", params = {"limit"})
+    public CursorPage<EmployeeResponse> getEmployeesByCompanyIdAfter(@PathVariable Integer companyId, @RequestParam(required = false) String after, Integer limit) throws IllegalOperationException {
+        return service.getEmployeesByCompanyIdAfter(companyId, after, limit);
+    }
+
+    @GetMapping(value = "/{companyId}/employees", produces = NdjsonWriter.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamEmployeesByCompanyId(@PathVariable Integer companyId) {
+        return outputStream -> {
+            NdjsonWriter writer = new NdjsonWriter(objectMapper, outputStream);
+            service.streamEmployeesByCompanyId(companyId, writer::write);
+            writer.flush();
+        };
     }
 
     @PostMapping
@@ -52,9 +116,10 @@ public class CompanyController {
     }
 
     @PutMapping("/{companyId}")
-    public CompanyResponse updateCompanyById(@RequestBody CompanyRequest companyRequest, @PathVariable Integer companyId) throws NoSuchDataException, IllegalOperationException {
+    public CompanyResponse updateCompanyById(@RequestBody CompanyRequest companyRequest, @PathVariable Integer companyId,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws NoSuchDataException, IllegalOperationException {
         Company company = CompanyMapper.convertCompanyRequestToCompany(companyRequest);
-        return service.updateCompany(companyId, company);
+        return service.updateCompany(companyId, company, ETags.parseVersion(ifMatch));
     }
 
     @DeleteMapping("/{companyId}")
@@ -63,4 +128,7 @@ public class CompanyController {
         return service.deleteCompanyById(companyId);
     }
 
+    private static boolean withEmployees(Set<String> fields) {
+        return fields == null || fields.contains(SparseFields.EMPLOYEES);
+    }
 }
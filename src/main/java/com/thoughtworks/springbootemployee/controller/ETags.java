@@ -0,0 +1,79 @@
+package com.thoughtworks.springbootemployee.controller;
+
+import com.thoughtworks.springbootemployee.config.WireFormatConfig;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ETags {
+    private static final String QUOTE = "\"";
+    private static final String ANY = "*";
+    private static final String SUFFIX_SEPARATOR = "-";
+    // versions start at 0, so a malformed or weak If-Match never matches, as strong comparison requires
+    private static final int NO_VERSION = -1;
+    // in the order of the message converters, which decides ties; JSON keeps the bare version, as before other formats
+    private static final Map<MediaType, String> REPRESENTATION_SUFFIXES = new LinkedHashMap<>();
+
+    static {
+        REPRESENTATION_SUFFIXES.put(MediaType.APPLICATION_JSON, "");
+        REPRESENTATION_SUFFIXES.put(MediaType.APPLICATION_CBOR, SUFFIX_SEPARATOR + "cbor");
+        REPRESENTATION_SUFFIXES.put(MediaType.parseMediaType(WireFormatConfig.APPLICATION_SMILE_VALUE), SUFFIX_SEPARATOR + "smile");
+    }
+
+    // JSON, CBOR and Smile bodies of one version differ byte for byte, so each gets its own strong ETag, and the
+    // response says it varies by Accept so a shared cache never answers a request for one format with another
+    public static String of(Object version, WebRequest request) {
+        HttpServletResponse response = ((NativeWebRequest) request).getNativeResponse(HttpServletResponse.class);
+        if (response != null && !response.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT)) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        return QUOTE + version + REPRESENTATION_SUFFIXES.get(negotiate(request.getHeader(HttpHeaders.ACCEPT))) + QUOTE;
+    }
+
+    // accepts the ETag of any representation: they all carry the same version
+    public static Integer parseVersion(String ifMatch) {
+        if (ifMatch == null || ANY.equals(ifMatch.trim())) {
+            return null;
+        }
+        String eTag = ifMatch.trim();
+        if (eTag.length() < 2 || !eTag.startsWith(QUOTE) || !eTag.endsWith(QUOTE)) {
+            return NO_VERSION;
+        }
+        String version = eTag.substring(1, eTag.length() - 1);
+        int suffix = version.indexOf(SUFFIX_SEPARATOR);
+        try {
+            return Integer.valueOf(suffix < 0 ? version : version.substring(0, suffix));
+        } catch (NumberFormatException e) {
+            return NO_VERSION;
+        }
+    }
+
+    // the media type Spring MVC's content negotiation will pick among the representations for this Accept header
+    private static MediaType negotiate(String accept) {
+        List<MediaType> acceptable;
+        try {
+            acceptable = accept == null ? Arrays.asList(MediaType.ALL) : MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> compatible = new ArrayList<>();
+        for (MediaType acceptableType : acceptable) {
+            for (MediaType representation : REPRESENTATION_SUFFIXES.keySet()) {
+                if (acceptableType.isCompatibleWith(representation)) {
+                    compatible.add(representation.copyQualityValue(acceptableType));
+                }
+            }
+        }
+        MediaType.sortBySpecificityAndQuality(compatible);
+        return compatible.isEmpty() ? MediaType.APPLICATION_JSON : compatible.get(0).removeQualityValue();
+    }
+}
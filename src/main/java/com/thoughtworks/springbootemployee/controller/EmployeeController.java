@@ -1,31 +1,84 @@
 package com.thoughtworks.springbootemployee.controller;
 
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.thoughtworks.springbootemployee.Mapper.EmployeeMapper;
+import com.thoughtworks.springbootemployee.config.WireFormatConfig;
+import com.thoughtworks.springbootemployee.dto.CursorPage;
+import com.thoughtworks.springbootemployee.dto.EmployeeBulkUpdate;
 import com.thoughtworks.springbootemployee.dto.EmployeeRequest;
 import com.thoughtworks.springbootemployee.dto.EmployeeResponse;
+import com.thoughtworks.springbootemployee.dto.EmployeeSearchCriteria;
+import com.thoughtworks.springbootemployee.dto.EmployeeStatistics;
+import com.thoughtworks.springbootemployee.dto.EmployeeSuggestion;
+import com.thoughtworks.springbootemployee.dto.EmployeeWriteStatus;
 import com.thoughtworks.springbootemployee.exception.IllegalOperationException;
+import com.thoughtworks.springbootemployee.exception.MalformedImportException;
 import com.thoughtworks.springbootemployee.exception.NoSuchDataException;
+import com.thoughtworks.springbootemployee.exception.WriteQueueFullException;
 import com.thoughtworks.springbootemployee.model.Employee;
 import com.thoughtworks.springbootemployee.service.EmployeeService;
+import com.thoughtworks.springbootemployee.service.EmployeeWriteBehindService;
 import org.springframework.data.domain.Page;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.StreamSupport;
 
 @RestController
 @RequestMapping("/employees")
 public class EmployeeController {
 
+    private static final long STATISTICS_MAX_AGE_SECONDS = 60;
+
     private final EmployeeService service;
+    private final ObjectMapper objectMapper;
+    // present only when employee.write-behind.enabled is set
+    private final Optional<EmployeeWriteBehindService> writeBehindService;
 
-    public EmployeeController(EmployeeService service) {
+    public EmployeeController(EmployeeService service, ObjectMapper objectMapper, Optional<EmployeeWriteBehindService> writeBehindService) {
         this.service = service;
+        this.objectMapper = objectMapper;
+        this.writeBehindService = writeBehindService;
     }
 
     @GetMapping()
-    public List<EmployeeResponse> getAll() {
-        return service.getAll();
+    public ResponseEntity<?> getAll(@RequestParam(required = false) String fields, WebRequest request) throws IllegalOperationException {
+        Set<String> requested = SparseFields.parse(fields, SparseFields.EMPLOYEE_FIELDS);
+        String eTag = ETags.of(service.getEmployeesFingerprint(), request);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        List<EmployeeResponse> employees = requested == null ? service.getAll() : service.getAll(requested);
+        return ResponseEntity.ok().eTag(eTag).body(SparseFields.narrow(employees, requested));
+    }
+
+    @GetMapping(produces = NdjsonWriter.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamAll() {
+        return outputStream -> {
+            NdjsonWriter writer = new NdjsonWriter(objectMapper, outputStream);
+            service.streamAll(writer::write);
+            writer.flush();
+        };
     }
 
     @GetMapping(params = {"page", "pageSize"})
@@ -33,27 +86,124 @@ public class EmployeeController {
         return service.getEmployeesByPage(page, pageSize);
     }
 
+    @GetMapping(params = {"limit"})
+    public CursorPage<EmployeeResponse> getAllAfter(@RequestParam(required = false) String after, Integer limit) throws IllegalOperationException {
+        return service.getEmployeesAfter(after, limit);
+    }
+
     @GetMapping(params = {"gender"})
     public List<EmployeeResponse> getAllByGender(String gender) {
         return service.getEmployeesByGender(gender);
     }
 
+    @GetMapping("/search")
+    public CursorPage<EmployeeResponse> searchEmployees(EmployeeSearchCriteria criteria) throws IllegalOperationException {
+        return service.searchEmployees(criteria);
+    }
+
+    @GetMapping("/suggest")
+    public List<EmployeeSuggestion> suggestEmployees(@RequestParam String q,
+                                                     @RequestParam(defaultValue = "10") Integer limit) throws IllegalOperationException {
+        return service.suggestEmployees(q, limit);
+    }
+
+    @GetMapping("/statistics")
+    public ResponseEntity<List<EmployeeStatistics>> getStatistics(@RequestParam(defaultValue = "salary") String field,
+                                                                  @RequestParam(required = false) List<String> groupBy) throws IllegalOperationException {
+        List<EmployeeStatistics> statistics = service.getStatistics(field, groupBy == null ? Collections.emptyList() : groupBy);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(STATISTICS_MAX_AGE_SECONDS, TimeUnit.SECONDS))
+                .body(statistics);
+    }
+
+    // the version is read first so a client holding it gets its 304 without the body being loaded; the cached body can
+    // lag that version, so it is reloaded when they differ and the ETag always names the body actually served
     @GetMapping("/{employeeId}")
-    public EmployeeResponse getEmployeeById(@PathVariable Integer employeeId) {
-        return service.getEmployeeById(employeeId);
+    public ResponseEntity<?> getEmployeeById(@PathVariable Integer employeeId, @RequestParam(required = false) String fields,
+                                             WebRequest request) throws NoSuchDataException, IllegalOperationException {
+        Set<String> requested = SparseFields.parse(fields, SparseFields.EMPLOYEE_FIELDS);
+        Integer version = service.getEmployeeVersion(employeeId);
+        if (version == null) {
+            throw new NoSuchDataException();
+        }
+        if (request.checkNotModified(ETags.of(version, request))) {
+            return null;
+        }
+        EmployeeResponse employee = service.getEmployeeById(employeeId);
+        if (employee == null || !version.equals(employee.getVersion())) {
+            employee = service.reloadEmployeeById(employeeId);
+        }
+        if (employee == null) {
+            throw new NoSuchDataException();
+        }
+        return ResponseEntity.ok().eTag(ETags.of(employee.getVersion(), request)).body(SparseFields.narrow(employee, requested));
     }
 
     @PostMapping
-    @ResponseStatus(value = HttpStatus.CREATED)
-    public EmployeeResponse addEmployee(@RequestBody EmployeeRequest employeeRequest) {
+    public ResponseEntity<?> addEmployee(@RequestBody EmployeeRequest employeeRequest) throws NoSuchDataException, IllegalOperationException, WriteQueueFullException {
+        if (writeBehindService.isPresent()) {
+            return accepted(writeBehindService.get().submitCreate(employeeRequest));
+        }
         Employee employee = EmployeeMapper.convertEmployeeRequestToEntity(employeeRequest);
-        return service.addEmployee(employee);
+        return ResponseEntity.status(HttpStatus.CREATED).body(service.addEmployee(employee));
+    }
+
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, WireFormatConfig.APPLICATION_SMILE_VALUE})
+    @ResponseStatus(value = HttpStatus.CREATED)
+    public List<Integer> addEmployees(@RequestBody List<EmployeeRequest> employeeRequests) throws IllegalOperationException {
+        List<Employee> employees = new ArrayList<>(employeeRequests.size());
+        for (EmployeeRequest employeeRequest : employeeRequests) {
+            employees.add(employeeRequest == null ? null : EmployeeMapper.convertEmployeeRequestToEntity(employeeRequest));
+        }
+        return service.addEmployees(employees);
+    }
+
+    @PostMapping(value = "/batch", consumes = NdjsonWriter.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(value = HttpStatus.CREATED)
+    public List<Integer> importEmployees(InputStream inputStream) throws IOException, IllegalOperationException, MalformedImportException {
+        try (MappingIterator<EmployeeRequest> employeeRequests = objectMapper.readerFor(EmployeeRequest.class).readValues(inputStream)) {
+            try {
+                return service.importEmployees(StreamSupport.stream(Spliterators.spliteratorUnknownSize(employeeRequests, Spliterator.ORDERED), false)
+                        .map(employeeRequest -> employeeRequest == null ? null : EmployeeMapper.convertEmployeeRequestToEntity(employeeRequest)));
+            } catch (RuntimeException e) {
+                // the iterator wraps mapping errors in RuntimeJsonMappingException and syntax errors in a plain RuntimeException
+                if (!(e.getCause() instanceof JsonProcessingException)) {
+                    throw e;
+                }
+                JsonLocation location = ((JsonProcessingException) e.getCause()).getLocation();
+                throw new MalformedImportException((location == null ? employeeRequests.getCurrentLocation() : location).getLineNr());
+            }
+        }
     }
 
     @PutMapping("/{employeeId}")
-    public EmployeeResponse modifyEmployee(@RequestBody EmployeeRequest modifiedEmployeeRequest, @PathVariable Integer employeeId) throws NoSuchDataException, IllegalOperationException {
+    public ResponseEntity<?> modifyEmployee(@RequestBody EmployeeRequest modifiedEmployeeRequest, @PathVariable Integer employeeId,
+                                            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws NoSuchDataException, IllegalOperationException, WriteQueueFullException {
+        if (writeBehindService.isPresent()) {
+            return accepted(writeBehindService.get().submitUpdate(employeeId, modifiedEmployeeRequest, ETags.parseVersion(ifMatch)));
+        }
         Employee modifiedEmployee = EmployeeMapper.convertEmployeeRequestToEntity(modifiedEmployeeRequest);
-        return service.updateEmployee(employeeId, modifiedEmployee);
+        return ResponseEntity.ok(service.updateEmployee(employeeId, modifiedEmployee, ETags.parseVersion(ifMatch)));
+    }
+
+    @GetMapping("/writes/{trackingId}")
+    public EmployeeWriteStatus getWriteStatus(@PathVariable String trackingId) throws NoSuchDataException {
+        EmployeeWriteStatus status = writeBehindService.isPresent() ? writeBehindService.get().getStatus(trackingId) : null;
+        if (status == null) {
+            throw new NoSuchDataException();
+        }
+        return status;
+    }
+
+    @PatchMapping
+    public Integer updateEmployees(@RequestBody EmployeeBulkUpdate update) throws IllegalOperationException, NoSuchDataException {
+        return service.updateEmployees(update);
+    }
+
+    @DeleteMapping(params = {"ids"})
+    @ResponseStatus(value = HttpStatus.ACCEPTED)
+    public Integer deleteEmployees(@RequestParam List<Integer> ids) throws IllegalOperationException {
+        return service.deleteEmployees(ids);
     }
 
     @DeleteMapping("/{employeeId}")
@@ -62,4 +212,8 @@ public class EmployeeController {
         return service.deleteEmployee(employeeId);
     }
 
+    private ResponseEntity<EmployeeWriteStatus> accepted(EmployeeWriteStatus status) {
+        return ResponseEntity.accepted().location(URI.create("/employees/writes/" + status.getTrackingId())).body(status);
+    }
+
 }
@@ -0,0 +1,32 @@
+package com.thoughtworks.springbootemployee.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+public class NdjsonWriter {
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private final JsonGenerator generator;
+
+    public NdjsonWriter(ObjectMapper objectMapper, OutputStream outputStream) throws IOException {
+        this.generator = objectMapper.getFactory().createGenerator(outputStream);
+        this.generator.setRootValueSeparator(null);
+    }
+
+    public void write(Object value) {
+        try {
+            generator.writeObject(value);
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void flush() throws IOException {
+        generator.flush();
+    }
+}
@@ -0,0 +1,53 @@
+package com.thoughtworks.springbootemployee.controller;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.thoughtworks.springbootemployee.exception.IllegalOperationException;
+import org.springframework.http.converter.json.MappingJacksonValue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+// ?fields=id,name narrows a response to the listed properties; leaving it out returns every property
+public class SparseFields {
+    public static final String FILTER = "fields";
+    public static final String EMPLOYEES = "employees";
+    public static final Set<String> EMPLOYEE_FIELDS = fields("id", "name", "age", "gender", "salary", "companyId");
+    public static final Set<String> COMPANY_FIELDS = fields("id", "companyName", "employeesNumber", EMPLOYEES);
+    private static final String SEPARATOR = ",";
+
+    public static Set<String> parse(String fields, Set<String> allowed) throws IllegalOperationException {
+        if (fields == null) {
+            return null;
+        }
+        Set<String> requested = new LinkedHashSet<>();
+        for (String field : fields.split(SEPARATOR)) {
+            String name = field.trim();
+            if (!name.isEmpty()) {
+                if (!allowed.contains(name)) {
+                    throw new IllegalOperationException();
+                }
+                requested.add(name);
+            }
+        }
+        if (requested.isEmpty()) {
+            throw new IllegalOperationException();
+        }
+        return requested;
+    }
+
+    public static Object narrow(Object body, Set<String> fields) {
+        if (fields == null || body == null) {
+            return body;
+        }
+        MappingJacksonValue value = new MappingJacksonValue(body);
+        value.setFilters(new SimpleFilterProvider().addFilter(FILTER, SimpleBeanPropertyFilter.filterOutAllExcept(fields)));
+        return value;
+    }
+
+    private static Set<String> fields(String... names) {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(names)));
+    }
+}
@@ -1,5 +1,6 @@
 package com.thoughtworks.springbootemployee.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.thoughtworks.springbootemployee.model.Employee;
 
 import java.util.List;
@@ -9,10 +10,24 @@ public class CompanyResponse {
     private String companyName;
     private Integer employeesNumber;
     private List<Employee> employees;
+    // the version this body was read at, so a cached body is served under its own ETag
+    @JsonIgnore
+    private Integer version;
 
     public CompanyResponse() {
     }
 
+    public CompanyResponse(Integer id, String companyName, Integer employeesNumber) {
+        this.id = id;
+        this.companyName = companyName;
+        this.employeesNumber = employeesNumber;
+    }
+
+    public CompanyResponse(Integer id, String companyName, Integer employeesNumber, Integer version) {
+        this(id, companyName, employeesNumber);
+        this.version = version;
+    }
+
     public CompanyResponse(Integer id, String companyName, Integer employeesNumber, List<Employee> employees) {
         this.id = id;
         this.companyName = companyName;
@@ -51,4 +66,12 @@ public class CompanyResponse {
     public void setId(Integer id) {
         this.id = id;
     }
+
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
 }
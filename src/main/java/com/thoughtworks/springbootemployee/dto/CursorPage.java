@@ -0,0 +1,32 @@
+package com.thoughtworks.springbootemployee.dto;
+
+import java.util.List;
+
+public class CursorPage<T> {
+    private List<T> content;
+    private String nextCursor;
+
+    public CursorPage() {
+    }
+
+    public CursorPage(List<T> content, String nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public void setContent(List<T> content) {
+        this.content = content;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,43 @@
+package com.thoughtworks.springbootemployee.dto;
+
+import java.util.List;
+
+// fields left null are not changed
+public class EmployeeBulkUpdate {
+    private List<Integer> ids;
+    private Integer salary;
+    private Integer companyId;
+
+    public EmployeeBulkUpdate() {
+    }
+
+    public EmployeeBulkUpdate(List<Integer> ids, Integer salary, Integer companyId) {
+        this.ids = ids;
+        this.salary = salary;
+        this.companyId = companyId;
+    }
+
+    public List<Integer> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<Integer> ids) {
+        this.ids = ids;
+    }
+
+    public Integer getSalary() {
+        return salary;
+    }
+
+    public void setSalary(Integer salary) {
+        this.salary = salary;
+    }
+
+    public Integer getCompanyId() {
+        return companyId;
+    }
+
+    public void setCompanyId(Integer companyId) {
+        this.companyId = companyId;
+    }
+}
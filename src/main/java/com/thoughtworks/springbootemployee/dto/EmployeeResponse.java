@@ -1,5 +1,7 @@
 package com.thoughtworks.springbootemployee.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 public class EmployeeResponse {
     private Integer id;
     private String name;
@@ -7,6 +9,9 @@ public class EmployeeResponse {
     private String gender;
     private Integer salary;
     private Integer companyId;
+    // the version this body was read at, so a cached body is served under its own ETag
+    @JsonIgnore
+    private Integer version;
 
     public EmployeeResponse() {
     }
@@ -67,4 +72,12 @@ public class EmployeeResponse {
     public void setCompanyId(Integer companyId) {
         this.companyId = companyId;
     }
+
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
 }
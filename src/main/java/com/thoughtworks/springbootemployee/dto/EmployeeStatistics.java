@@ -0,0 +1,110 @@
+package com.thoughtworks.springbootemployee.dto;
+
+public class EmployeeStatistics {
+    private Integer companyId;
+    private String gender;
+    private Long count;
+    private Long sum;
+    private Double avg;
+    private Integer min;
+    private Integer max;
+    private Double p50;
+    private Double p90;
+    private Double p99;
+
+    public EmployeeStatistics() {
+    }
+
+    public EmployeeStatistics(Integer companyId, String gender, Long count, Long sum, Double avg, Integer min, Integer max, Double p50, Double p90, Double p99) {
+        this.companyId = companyId;
+        this.gender = gender;
+        this.count = count;
+        this.sum = sum;
+        this.avg = avg;
+        this.min = min;
+        this.max = max;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+    }
+
+    public Integer getCompanyId() {
+        return companyId;
+    }
+
+    public void setCompanyId(Integer companyId) {
+        this.companyId = companyId;
+    }
+
+    public String getGender() {
+        return gender;
+    }
+
+    public void setGender(String gender) {
+        this.gender = gender;
+    }
+
+    public Long getCount() {
+        return count;
+    }
+
+    public void setCount(Long count) {
+        this.count = count;
+    }
+
+    public Long getSum() {
+        return sum;
+    }
+
+    public void setSum(Long sum) {
+        this.sum = sum;
+    }
+
+    public Double getAvg() {
+        return avg;
+    }
+
+    public void setAvg(Double avg) {
+        this.avg = avg;
+    }
+
+    public Integer getMin() {
+        return min;
+    }
+
+    public void setMin(Integer min) {
+        this.min = min;
+    }
+
+    public Integer getMax() {
+        return max;
+    }
+
+    public void setMax(Integer max) {
+        this.max = max;
+    }
+
+    public Double getP50() {
+        return p50;
+    }
+
+    public void setP50(Double p50) {
+        this.p50 = p50;
+    }
+
+    public Double getP90() {
+        return p90;
+    }
+
+    public void setP90(Double p90) {
+        this.p90 = p90;
+    }
+
+    public Double getP99() {
+        return p99;
+    }
+
+    public void setP99(Double p99) {
+        this.p99 = p99;
+    }
+}
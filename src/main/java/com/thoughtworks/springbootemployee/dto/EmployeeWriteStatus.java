@@ -0,0 +1,44 @@
+package com.thoughtworks.springbootemployee.dto;
+
+public class EmployeeWriteStatus {
+    public static final String ACCEPTED = "ACCEPTED";
+    public static final String WRITTEN = "WRITTEN";
+    public static final String FAILED = "FAILED";
+
+    private String trackingId;
+    private String state;
+    private Integer employeeId;
+
+    public EmployeeWriteStatus() {
+    }
+
+    public EmployeeWriteStatus(String trackingId, String state, Integer employeeId) {
+        this.trackingId = trackingId;
+        this.state = state;
+        this.employeeId = employeeId;
+    }
+
+    public String getTrackingId() {
+        return trackingId;
+    }
+
+    public void setTrackingId(String trackingId) {
+        this.trackingId = trackingId;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public Integer getEmployeeId() {
+        return employeeId;
+    }
+
+    public void setEmployeeId(Integer employeeId) {
+        this.employeeId = employeeId;
+    }
+}
@@ -0,0 +1,5 @@
+package com.thoughtworks.springbootemployee.exception;
+
+public class ExecutorSaturatedException extends Exception {
+
+}
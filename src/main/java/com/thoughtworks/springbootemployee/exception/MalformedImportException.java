@@ -0,0 +1,13 @@
+package com.thoughtworks.springbootemployee.exception;
+
+public class MalformedImportException extends Exception {
+    private final int line;
+
+    public MalformedImportException(int line) {
+        this.line = line;
+    }
+
+    public int getLine() {
+        return line;
+    }
+}
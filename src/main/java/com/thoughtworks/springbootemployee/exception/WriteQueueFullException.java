@@ -0,0 +1,5 @@
+package com.thoughtworks.springbootemployee.exception;
+
+public class WriteQueueFullException extends Exception {
+
+}
@@ -1,10 +1,15 @@
 package com.thoughtworks.springbootemployee.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.BatchSize;
+
 import javax.persistence.*;
 import java.util.List;
 
 @Entity
 public class Company {
+    // paged listings can't fetch-join a collection, so initialize up to a page of collections per query
+    public static final int EMPLOYEES_BATCH_SIZE = 100;
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -13,7 +18,12 @@ public class Company {
     private Integer employeesNumber;
     @OneToMany(cascade = {CascadeType.ALL})
     @JoinColumn(name = "companyId")
+    @BatchSize(size = EMPLOYEES_BATCH_SIZE)
     private List<Employee> employees;
+    // also bumped by every write to one of its employees, since company responses embed them
+    @Version
+    @JsonIgnore
+    private int version;
 
     public Company() {
     }
@@ -62,4 +72,12 @@ public class Company {
     public void setId(Integer id) {
         this.id = id;
     }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
 }
@@ -1,5 +1,6 @@
 package com.thoughtworks.springbootemployee.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import javax.persistence.*;
 
 @Entity
@@ -13,6 +14,10 @@ public class Employee {
     private String gender;
     private Integer salary;
     private Integer companyId;
+    // primitive, so Spring Data still tells new employees apart by their id
+    @Version
+    @JsonIgnore
+    private int version;
 
     public Employee() {
     }
@@ -81,4 +86,12 @@ public class Employee {
     public void setSalary(Integer salary) {
         this.salary = salary;
     }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
 }
@@ -1,9 +1,73 @@
 package com.thoughtworks.springbootemployee.repository;
 
+import com.thoughtworks.springbootemployee.dto.CompanyResponse;
 import com.thoughtworks.springbootemployee.model.Company;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface CompanyRepository extends JpaRepository<Company, Integer> {
+    String COUNT_COMPANY_EMPLOYEES = "(select count(*) from employee e where e.company_id = c.id)";
+
+    // see EmployeeRepository.LIST_FINGERPRINT
+    String LIST_FINGERPRINT = "concat(str(count(c)), '-', str(coalesce(sum(c.id), 0)), '-', str(coalesce(sum(c.version), 0)))";
+
+    @Query("select new com.thoughtworks.springbootemployee.dto.CompanyResponse(c.id, c.companyName, c.employeesNumber) " +
+            "from Company c order by c.id")
+    List<CompanyResponse> findAllResponses();
+
+    @Query("select new com.thoughtworks.springbootemployee.dto.CompanyResponse(c.id, c.companyName, c.employeesNumber, c.version) " +
+            "from Company c where c.id = :id")
+    Optional<CompanyResponse> findResponseById(@Param("id") Integer id);
+
+    @EntityGraph(attributePaths = "employees")
+    Optional<Company> findWithEmployeesById(Integer id);
+
+    @Query("select c from Company c where c.id > :cursor order by c.id")
+    List<Company> findNextPage(@Param("cursor") Integer cursor, Pageable pageable);
+
+    @Query("select c.version from Company c where c.id = :id")
+    Optional<Integer> findVersionById(@Param("id") Integer id);
+
+    @Query("select " + LIST_FINGERPRINT + " from Company c")
+    String findListFingerprint();
+
+    @Modifying
+    @Query("update Company c set c.employeesNumber = coalesce(c.employeesNumber, 0) + :delta, c.version = c.version + 1 " +
+            "where c.id = :id")
+    int adjustEmployeesNumber(@Param("id") Integer id, @Param("delta") int delta);
+
+    @Modifying
+    @Query("update Company c set c.version = c.version + 1 where c.id = :id")
+    int incrementVersion(@Param("id") Integer id);
+
+    @Modifying
+    @Query("update Company c set c.version = c.version + 1 where c.id in :ids")
+    int incrementVersions(@Param("ids") Collection<Integer> ids);
+
+    // skips the employees cascade, so callers delete the company's employees first
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Company c where c.id = :id")
+    int bulkDeleteById(@Param("id") Integer id);
+
+    @Modifying
+    @Query(value = "update company c set employees_number = " + COUNT_COMPANY_EMPLOYEES + ", version = version + 1 " +
+            "where c.id in :ids",
+            nativeQuery = true)
+    int recountEmployeesNumbers(@Param("ids") Collection<Integer> ids);
+
+    @Modifying
+    @Query(value = "update company c set employees_number = " + COUNT_COMPANY_EMPLOYEES + ", version = version + 1 " +
+            "where c.employees_number is null or c.employees_number <> " + COUNT_COMPANY_EMPLOYEES,
+            nativeQuery = true)
+    int rebuildDriftedEmployeesNumbers();
 }
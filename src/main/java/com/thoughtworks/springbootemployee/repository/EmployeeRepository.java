@@ -1,13 +1,100 @@
 package com.thoughtworks.springbootemployee.repository;
 
+import com.thoughtworks.springbootemployee.dto.EmployeeResponse;
+import com.thoughtworks.springbootemployee.dto.EmployeeSuggestion;
 import com.thoughtworks.springbootemployee.model.Employee;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import javax.persistence.Entity;
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
-public interface EmployeeRepository extends JpaRepository<Employee, Integer> {
+public interface EmployeeRepository extends JpaRepository<Employee, Integer>, EmployeeRepositoryCustom {
+    String STREAM_FETCH_SIZE = "500";
+
+    // ids only ever grow and versions only ever increase, so any insert, delete or update changes the triple
+    String LIST_FINGERPRINT = "concat(str(count(e)), '-', str(coalesce(sum(e.id), 0)), '-', str(coalesce(sum(e.version), 0)))";
+
+    String SELECT_EMPLOYEE_RESPONSE = "select new com.thoughtworks.springbootemployee.dto.EmployeeResponse(" +
+            "e.id, e.name, e.age, e.gender, e.salary, e.companyId) from Employee e ";
+
     List<Employee> findByGender(String gender);
+
+    @Query("select e.version from Employee e where e.id = :id")
+    Optional<Integer> findVersionById(@Param("id") Integer id);
+
+    @Query("select " + LIST_FINGERPRINT + " from Employee e")
+    String findListFingerprint();
+
+    @Modifying
+    @Query("update Employee e set e.version = e.version + 1 where e.id in :ids")
+    int incrementVersions(@Param("ids") Collection<Integer> ids);
+
+    @Query("select distinct e.companyId from Employee e where e.id in :ids and e.companyId is not null")
+    List<Integer> findCompanyIdsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @Query("select e.id from Employee e where e.companyId = :companyId")
+    List<Integer> findIdsByCompanyId(@Param("companyId") Integer companyId);
+
+    // bulk statements bypass the persistence context, so it is flushed before and cleared after each of them
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Employee e where e.id in :ids")
+    int bulkDeleteByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Employee e where e.companyId = :companyId")
+    int bulkDeleteByCompanyId(@Param("companyId") Integer companyId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Employee e set e.salary = :salary, e.version = e.version + 1 where e.id in :ids")
+    int bulkUpdateSalary(@Param("ids") Collection<Integer> ids, @Param("salary") Integer salary);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Employee e set e.companyId = :companyId, e.version = e.version + 1 where e.id in :ids")
+    int bulkUpdateCompanyId(@Param("ids") Collection<Integer> ids, @Param("companyId") Integer companyId);
+
+    @Query(SELECT_EMPLOYEE_RESPONSE + "order by e.id")
+    List<EmployeeResponse> findAllResponses();
+
+    @Query(SELECT_EMPLOYEE_RESPONSE + "where e.gender = :gender order by e.id")
+    List<EmployeeResponse> findResponsesByGender(@Param("gender") String gender);
+
+    @QueryHints(@QueryHint(name = HINT_READONLY, value = "true"))
+    @Query("select e from Employee e where e.companyId is not null order by e.id")
+    List<Employee> findAllAssignedToCompany();
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select e from Employee e order by e.id")
+    Stream<Employee> streamAll();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("select new com.thoughtworks.springbootemployee.dto.EmployeeSuggestion(e.id, e.name) from Employee e")
+    Stream<EmployeeSuggestion> streamSuggestions();
+
+    @Query("select e from Employee e where e.id > :cursor order by e.id")
+    List<Employee> findNextPage(@Param("cursor") Integer cursor, Pageable pageable);
+
+    Page<Employee> findByCompanyId(Integer companyId, Pageable pageable);
+
+    @Query("select e from Employee e where e.companyId = :companyId and e.id > :cursor order by e.id")
+    List<Employee> findNextPageByCompanyId(@Param("companyId") Integer companyId, @Param("cursor") Integer cursor, Pageable pageable);
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select e from Employee e where e.companyId = :companyId order by e.id")
+    Stream<Employee> streamByCompanyId(@Param("companyId") Integer companyId);
 }
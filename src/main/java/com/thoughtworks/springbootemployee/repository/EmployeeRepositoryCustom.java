@@ -0,0 +1,20 @@
+package com.thoughtworks.springbootemployee.repository;
+
+import com.thoughtworks.springbootemployee.dto.EmployeeResponse;
+import com.thoughtworks.springbootemployee.dto.EmployeeStatistics;
+import com.thoughtworks.springbootemployee.model.Employee;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface EmployeeRepositoryCustom {
+    List<Integer> batchInsert(List<Employee> employees);
+
+    List<EmployeeStatistics> aggregate(String field, List<String> groupBy);
+
+    List<Employee> search(Specification<Employee> specification, Sort sort, int limit);
+
+    List<EmployeeResponse> findResponses(Collection<String> fields, Integer companyId);
+}
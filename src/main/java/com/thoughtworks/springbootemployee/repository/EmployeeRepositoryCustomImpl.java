@@ -0,0 +1,188 @@
+package com.thoughtworks.springbootemployee.repository;
+
+import com.thoughtworks.springbootemployee.dto.EmployeeResponse;
+import com.thoughtworks.springbootemployee.dto.EmployeeStatistics;
+import com.thoughtworks.springbootemployee.model.Employee;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.function.BiConsumer;
+
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+// IDENTITY ids stop Hibernate from batching inserts, so bulk inserts go through plain JDBC, one multi-row INSERT per
+// batch: a JDBC batch still executes each row as its own statement; EmployeeService.BATCH_SIZE keeps the parameter
+// count well inside common driver limits
+public class EmployeeRepositoryCustomImpl implements EmployeeRepositoryCustom {
+    private static final String INSERT_EMPLOYEE =
+            "INSERT INTO employee(name, age, gender, salary, company_id) VALUES ";
+    private static final String INSERT_EMPLOYEE_ROW = "(?, ?, ?, ?, ?)";
+
+    // request parameters only ever select from these columns, never flow into the SQL themselves
+    private static final Map<String, String> STATISTICS_FIELDS = new HashMap<>();
+    private static final Map<String, String> STATISTICS_GROUPS = new HashMap<>();
+    private static final Map<String, BiConsumer<EmployeeResponse, Object>> RESPONSE_FIELDS = new LinkedHashMap<>();
+
+    static {
+        STATISTICS_FIELDS.put("salary", "salary");
+        STATISTICS_FIELDS.put("age", "age");
+        STATISTICS_GROUPS.put("companyId", "company_id");
+        STATISTICS_GROUPS.put("gender", "gender");
+        RESPONSE_FIELDS.put("id", (response, value) -> response.setId((Integer) value));
+        RESPONSE_FIELDS.put("name", (response, value) -> response.setName((String) value));
+        RESPONSE_FIELDS.put("age", (response, value) -> response.setAge((Integer) value));
+        RESPONSE_FIELDS.put("gender", (response, value) -> response.setGender((String) value));
+        RESPONSE_FIELDS.put("salary", (response, value) -> response.setSalary((Integer) value));
+        RESPONSE_FIELDS.put("companyId", (response, value) -> response.setCompanyId((Integer) value));
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public EmployeeRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public List<Integer> batchInsert(List<Employee> employees) {
+        StringJoiner rows = new StringJoiner(", ", INSERT_EMPLOYEE, "");
+        for (int i = 0; i < employees.size(); i++) {
+            rows.add(INSERT_EMPLOYEE_ROW);
+        }
+        return jdbcTemplate.execute((ConnectionCallback<List<Integer>>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(rows.toString(), new String[]{"id"})) {
+                int parameter = 1;
+                for (Employee employee : employees) {
+                    statement.setString(parameter++, employee.getName());
+                    statement.setObject(parameter++, employee.getAge(), Types.INTEGER);
+                    statement.setString(parameter++, employee.getGender());
+                    statement.setObject(parameter++, employee.getSalary(), Types.INTEGER);
+                    statement.setObject(parameter++, employee.getCompanyId(), Types.INTEGER);
+                }
+                statement.executeUpdate();
+                List<Integer> ids = new ArrayList<>(employees.size());
+                try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                    while (generatedKeys.next()) {
+                        ids.add(generatedKeys.getInt(1));
+                    }
+                }
+                return ids;
+            }
+        });
+    }
+
+    @Override
+    public List<EmployeeStatistics> aggregate(String field, List<String> groupBy) {
+        String column = STATISTICS_FIELDS.get(field);
+        if (column == null) {
+            throw new IllegalArgumentException("unknown statistics field " + field);
+        }
+        StringJoiner groupColumns = new StringJoiner(", ");
+        for (String group : groupBy) {
+            String groupColumn = STATISTICS_GROUPS.get(group);
+            if (groupColumn == null) {
+                throw new IllegalArgumentException("unknown statistics group " + group);
+            }
+            groupColumns.add(groupColumn);
+        }
+        String sql = "SELECT "
+                + (groupBy.contains("companyId") ? "company_id" : "NULL") + " AS company_id, "
+                + (groupBy.contains("gender") ? "gender" : "NULL") + " AS gender, "
+                + "COUNT(*), SUM(" + column + "), AVG(CAST(" + column + " AS DOUBLE)), MIN(" + column + "), MAX(" + column + "), "
+                + percentile(0.5, column) + ", " + percentile(0.9, column) + ", " + percentile(0.99, column)
+                + " FROM employee"
+                + (groupBy.isEmpty() ? "" : " GROUP BY " + groupColumns + " ORDER BY " + groupColumns);
+        return jdbcTemplate.query(sql, (resultSet, rowNumber) -> new EmployeeStatistics(
+                (Integer) resultSet.getObject(1),
+                resultSet.getString(2),
+                resultSet.getLong(3),
+                toLong(resultSet.getObject(4)),
+                toDouble(resultSet.getObject(5)),
+                (Integer) resultSet.getObject(6),
+                (Integer) resultSet.getObject(7),
+                toDouble(resultSet.getObject(8)),
+                toDouble(resultSet.getObject(9)),
+                toDouble(resultSet.getObject(10))));
+    }
+
+    @Override
+    public List<Employee> search(Specification<Employee> specification, Sort sort, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Employee> query = builder.createQuery(Employee.class);
+        Root<Employee> root = query.from(Employee.class);
+        Predicate predicate = specification.toPredicate(root, query, builder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.select(root).orderBy(QueryUtils.toOrders(sort, root, builder));
+        // no count query: the caller fetches limit + 1 rows to learn whether another page exists
+        return entityManager.createQuery(query)
+                .setHint(HINT_READONLY, true)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    // selects only the requested columns; fields left out stay null on the responses
+    @Override
+    public List<EmployeeResponse> findResponses(Collection<String> fields, Integer companyId) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<Employee> root = query.from(Employee.class);
+        List<Selection<?>> selections = new ArrayList<>(fields.size());
+        for (String field : fields) {
+            if (!RESPONSE_FIELDS.containsKey(field)) {
+                throw new IllegalArgumentException("unknown employee field " + field);
+            }
+            selections.add(root.get(field).alias(field));
+        }
+        query.multiselect(selections);
+        if (companyId != null) {
+            query.where(builder.equal(root.get("companyId"), companyId));
+        }
+        query.orderBy(builder.asc(root.get("id")));
+        List<Tuple> rows = entityManager.createQuery(query).setHint(HINT_READONLY, true).getResultList();
+        List<EmployeeResponse> responses = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            EmployeeResponse response = new EmployeeResponse();
+            for (String field : fields) {
+                RESPONSE_FIELDS.get(field).accept(response, row.get(field));
+            }
+            responses.add(response);
+        }
+        return responses;
+    }
+
+    private static String percentile(double fraction, String column) {
+        return "PERCENTILE_CONT(" + fraction + ") WITHIN GROUP (ORDER BY " + column + ")";
+    }
+
+    private static Long toLong(Object value) {
+        return value == null ? null : ((Number) value).longValue();
+    }
+
+    private static Double toDouble(Object value) {
+        return value == null ? null : ((Number) value).doubleValue();
+    }
+}
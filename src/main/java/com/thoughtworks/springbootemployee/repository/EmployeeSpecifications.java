@@ -0,0 +1,62 @@
+package com.thoughtworks.springbootemployee.repository;
+
+import com.thoughtworks.springbootemployee.dto.EmployeeSearchCriteria;
+import com.thoughtworks.springbootemployee.model.Employee;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.criteria.Path;
+
+public class EmployeeSpecifications {
+    private static final char LIKE_ESCAPE = '\\';
+
+    // unset criteria contribute no predicate, so each index only sees the filters actually requested
+    public static Specification<Employee> matching(EmployeeSearchCriteria criteria) {
+        return Specification.where(equalTo("gender", criteria.getGender()))
+                .and(equalTo("companyId", criteria.getCompanyId()))
+                .and(between("age", criteria.getMinAge(), criteria.getMaxAge()))
+                .and(between("salary", criteria.getMinSalary(), criteria.getMaxSalary()))
+                .and(nameStartsWith(criteria.getName()));
+    }
+
+    public static Specification<Employee> isNotNull(String field) {
+        return (root, query, builder) -> builder.isNotNull(root.get(field));
+    }
+
+    public static Specification<Employee> afterId(Integer id, boolean ascending) {
+        return (root, query, builder) -> ascending
+                ? builder.greaterThan(root.get("id"), id)
+                : builder.lessThan(root.get("id"), id);
+    }
+
+    // keyset predicate for "order by field, id": strictly past the last row's value, or tied on it with a later id
+    public static <T extends Comparable<? super T>> Specification<Employee> after(String field, T value, Integer id, boolean ascending) {
+        return (root, query, builder) -> {
+            Path<T> path = root.get(field);
+            Path<Integer> idPath = root.get("id");
+            return ascending
+                    ? builder.or(builder.greaterThan(path, value), builder.and(builder.equal(path, value), builder.greaterThan(idPath, id)))
+                    : builder.or(builder.lessThan(path, value), builder.and(builder.equal(path, value), builder.lessThan(idPath, id)));
+        };
+    }
+
+    private static Specification<Employee> equalTo(String field, Object value) {
+        return value == null ? null : (root, query, builder) -> builder.equal(root.get(field), value);
+    }
+
+    private static Specification<Employee> between(String field, Integer min, Integer max) {
+        Specification<Employee> atLeast = min == null ? null
+                : (root, query, builder) -> builder.greaterThanOrEqualTo(root.get(field), min);
+        Specification<Employee> atMost = max == null ? null
+                : (root, query, builder) -> builder.lessThanOrEqualTo(root.get(field), max);
+        return Specification.where(atLeast).and(atMost);
+    }
+
+    // a prefix LIKE stays an index range scan, unlike a leading wildcard
+    private static Specification<Employee> nameStartsWith(String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            return null;
+        }
+        String pattern = prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return (root, query, builder) -> builder.like(root.get("name"), pattern, LIKE_ESCAPE);
+    }
+}
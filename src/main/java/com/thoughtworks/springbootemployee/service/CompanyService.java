@@ -1,49 +1,132 @@
 package com.thoughtworks.springbootemployee.service;
 
 import com.thoughtworks.springbootemployee.Mapper.CompanyMapper;
+import com.thoughtworks.springbootemployee.Mapper.CursorMapper;
 import com.thoughtworks.springbootemployee.Mapper.EmployeeMapper;
+import com.thoughtworks.springbootemployee.config.CacheConfig;
 import com.thoughtworks.springbootemployee.dto.CompanyResponse;
+import com.thoughtworks.springbootemployee.dto.CursorPage;
 import com.thoughtworks.springbootemployee.dto.EmployeeResponse;
 import com.thoughtworks.springbootemployee.exception.IllegalOperationException;
 import com.thoughtworks.springbootemployee.exception.NoSuchDataException;
 import com.thoughtworks.springbootemployee.model.Company;
 import com.thoughtworks.springbootemployee.model.Employee;
 import com.thoughtworks.springbootemployee.repository.CompanyRepository;
+import com.thoughtworks.springbootemployee.repository.EmployeeRepository;
+import org.hibernate.Hibernate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class CompanyService {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompanyService.class);
+
     private final CompanyRepository companyRepository;
+    private final EmployeeRepository employeeRepository;
+    private final EmployeeNameIndex nameIndex;
+    @PersistenceContext
+    private EntityManager entityManager;
 
-    public CompanyService(CompanyRepository companyRepository) {
+    public CompanyService(CompanyRepository companyRepository, EmployeeRepository employeeRepository, EmployeeNameIndex nameIndex) {
         this.companyRepository = companyRepository;
+        this.employeeRepository = employeeRepository;
+        this.nameIndex = nameIndex;
     }
 
+    @Transactional(readOnly = true)
     public List<CompanyResponse> getAll() {
-        List<CompanyResponse> companyResponses = new ArrayList<>();
-        List<Company> companies = companyRepository.findAll();
-        for (Company company : companies) {
-            companyResponses.add(CompanyMapper.convertCompanyToCompanyResponse(company));
+        List<CompanyResponse> companyResponses = companyRepository.findAllResponses();
+        Map<Integer, List<Employee>> employeesByCompanyId = new HashMap<>();
+        for (Employee employee : employeeRepository.findAllAssignedToCompany()) {
+            employeesByCompanyId.computeIfAbsent(employee.getCompanyId(), companyId -> new ArrayList<>()).add(employee);
+        }
+        for (CompanyResponse companyResponse : companyResponses) {
+            companyResponse.setEmployees(employeesByCompanyId.getOrDefault(companyResponse.getId(), new ArrayList<>()));
         }
         return companyResponses;
     }
 
+    // without the embedded employees the listing never reads the employee table
+    @Transactional(readOnly = true)
+    public List<CompanyResponse> getAllWithoutEmployees() {
+        return companyRepository.findAllResponses();
+    }
+
+    @Transactional(readOnly = true)
+    public Integer getCompanyVersion(Integer id) {
+        return companyRepository.findVersionById(id).orElse(null);
+    }
+
+    @Transactional(readOnly = true)
+    public String getCompaniesFingerprint() {
+        return companyRepository.findListFingerprint();
+    }
+
+    @Transactional(readOnly = true)
+    public CompanyResponse getCompanyWithoutEmployeesById(Integer id) {
+        return companyRepository.findResponseById(id).orElse(null);
+    }
+
+    @Cacheable(cacheNames = CacheConfig.COMPANIES, key = "#id")
+    @Transactional(readOnly = true)
     public CompanyResponse getCompanyById(Integer id) {
-        CompanyResponse companyResponse = new CompanyResponse();
-        Company company = companyRepository.findById(id).orElse(null);
-        return companyResponse = CompanyMapper.convertCompanyToCompanyResponse(company);
+        return findCompanyResponse(id);
+    }
+
+    // see EmployeeService.reloadEmployeeById
+    @CachePut(cacheNames = CacheConfig.COMPANIES, key = "#id")
+    @Transactional(readOnly = true)
+    public CompanyResponse reloadCompanyById(Integer id) {
+        return findCompanyResponse(id);
     }
 
+    private CompanyResponse findCompanyResponse(Integer id) {
+        return companyRepository.findWithEmployeesById(id).map(CompanyMapper::convertCompanyToCompanyResponse).orElse(null);
+    }
+
+    // pages are serialized after the transaction ends, so their employees are loaded here
+    @Transactional(readOnly = true)
     public Page<Company> getCompaniesByPage(int page, int pageSize) {
-        return companyRepository.findAll(PageRequest.of(page - 1, pageSize));
+        Page<Company> companies = companyRepository.findAll(PageRequest.of(page - 1, pageSize));
+        companies.forEach(company -> Hibernate.initialize(company.getEmployees()));
+        return companies;
     }
 
+    @Transactional(readOnly = true)
+    public CursorPage<CompanyResponse> getCompaniesAfter(String after, Integer limit) throws IllegalOperationException {
+        int cursor = CursorMapper.decode(after);
+        int size = CursorMapper.checkLimit(limit);
+        List<Company> companies = companyRepository.findNextPage(cursor, PageRequest.of(0, size + 1));
+        companies.forEach(company -> Hibernate.initialize(company.getEmployees()));
+        return CursorMapper.toCursorPage(companies, size, Company::getId, CompanyMapper::convertCompanyToCompanyResponse);
+    }
+
+    @Transactional(readOnly = true)
     public List<EmployeeResponse> getEmployeesByCompanyId(int companyId) {
         Company company = companyRepository.findById(companyId).orElse(null);
         if (company != null) {
@@ -57,34 +140,143 @@ public class CompanyService {
         return null;
     }
 
+    @Transactional(readOnly = true)
+    public List<EmployeeResponse> getEmployeesByCompanyId(int companyId, Set<String> fields) {
+        if (!companyRepository.existsById(companyId)) {
+            return null;
+        }
+        return employeeRepository.findResponses(fields, companyId);
+    }
+
+    @Transactional(readOnly = true)
+    public Page<EmployeeResponse> getEmployeesByCompanyId(int companyId, int page, int pageSize) {
+        return employeeRepository.findByCompanyId(companyId, PageRequest.of(page - 1, pageSize, Sort.by("id")))
+                .map(EmployeeMapper::convertEntityToEmployeeResponse);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<EmployeeResponse> getEmployeesByCompanyIdAfter(int companyId, String after, Integer limit) throws IllegalOperationException {
+        int cursor = CursorMapper.decode(after);
+        int size = CursorMapper.checkLimit(limit);
+        List<Employee> employees = employeeRepository.findNextPageByCompanyId(companyId, cursor, PageRequest.of(0, size + 1));
+        return CursorMapper.toCursorPage(employees, size, Employee::getId, EmployeeMapper::convertEntityToEmployeeResponse);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamEmployeesByCompanyId(int companyId, Consumer<EmployeeResponse> consumer) {
+        try (Stream<Employee> employees = employeeRepository.streamByCompanyId(companyId)) {
+            employees.forEach(employee -> {
+                consumer.accept(EmployeeMapper.convertEntityToEmployeeResponse(employee));
+                entityManager.detach(employee);
+            });
+        }
+    }
+
     public CompanyResponse addCompany(Company company) {
+        company.setEmployeesNumber(countEmployees(company));
         CompanyResponse companyResponse = new CompanyResponse();
         return companyResponse = CompanyMapper.convertCompanyToCompanyResponse(company);
     }
 
-    public CompanyResponse updateCompany(Integer companyID, Company company) throws NoSuchDataException, IllegalOperationException {
+    @Transactional
+    @Caching(evict = {@CacheEvict(cacheNames = CacheConfig.EMPLOYEES, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.COMPANIES, allEntries = true)})
+    public CompanyResponse updateCompany(Integer companyID, Company company, Integer expectedVersion) throws NoSuchDataException, IllegalOperationException {
         if (companyID != company.getId()) {
             throw new IllegalOperationException();
         }
         Company fetchedCompany = companyRepository.findById(companyID).orElse(null);
         if (fetchedCompany != null) {
-            fetchedCompany.setCompanyName(company.getCompanyName());
-            fetchedCompany.setEmployees(company.getEmployees());
-            fetchedCompany.setEmployeesNumber(company.getEmployeesNumber());
+            if (expectedVersion != null && expectedVersion != fetchedCompany.getVersion()) {
+                throw new ObjectOptimisticLockingFailureException(Company.class, companyID);
+            }
+            // save merges the request's company, employees included, onto the managed fetchedCompany
+            company.setVersion(fetchedCompany.getVersion());
+            company.setEmployeesNumber(countEmployees(company));
+            List<Employee> requestEmployees = company.getEmployees() == null ? new ArrayList<>() : company.getEmployees();
+            Map<Integer, Employee> currentEmployees = findCurrentEmployees(requestEmployees);
+            // employees moved in from other companies leave those counts one short each
+            Set<Integer> affectedCompanyIds = new HashSet<>();
+            for (Employee employee : requestEmployees) {
+                Employee currentEmployee = currentEmployees.get(employee.getId());
+                if (currentEmployee != null) {
+                    employee.setVersion(currentEmployee.getVersion());
+                    if (currentEmployee.getCompanyId() != null) {
+                        affectedCompanyIds.add(currentEmployee.getCompanyId());
+                    }
+                }
+                // companyId shares its column with the employees join column and would otherwise unassign them
+                employee.setCompanyId(companyID);
+            }
+            affectedCompanyIds.remove(companyID);
+            // employees left out of the list are unassigned by the collection update, which doesn't version them
+            List<Integer> unassignedEmployeeIds = fetchedCompany.getEmployees() == null ? new ArrayList<>()
+                    : fetchedCompany.getEmployees().stream()
+                    .map(Employee::getId)
+                    .filter(id -> !currentEmployees.containsKey(id))
+                    .collect(Collectors.toList());
+
             fetchedCompany = companyRepository.save(company);
+            if (fetchedCompany.getEmployees() != null) {
+                fetchedCompany.getEmployees().forEach(employee -> nameIndex.put(employee.getId(), employee.getName()));
+            }
+            companyRepository.flush();
+            if (!affectedCompanyIds.isEmpty()) {
+                companyRepository.recountEmployeesNumbers(affectedCompanyIds);
+            }
+            if (!unassignedEmployeeIds.isEmpty()) {
+                employeeRepository.incrementVersions(unassignedEmployeeIds);
+            }
+            // the merge versions the company only for changes to its own row or collection, not to its employees
+            companyRepository.incrementVersion(companyID);
         } else {
             throw new NoSuchDataException();
         }
         return CompanyMapper.convertCompanyToCompanyResponse(fetchedCompany);
     }
 
+    @Transactional
+    @Caching(evict = {@CacheEvict(cacheNames = CacheConfig.COMPANIES, key = "#companyId"),
+            @CacheEvict(cacheNames = CacheConfig.EMPLOYEES, allEntries = true)})
+    // set-based rather than cascading through every loaded employee, so the statements issued don't grow with headcount;
+    // the response carries the company row without its employees for the same reason
     public CompanyResponse deleteCompanyById(Integer companyId) throws NoSuchDataException {
-        Company fetchedCompany = companyRepository.findById(companyId).orElse(null);
-        if (fetchedCompany != null) {
-            companyRepository.delete(fetchedCompany);
+        CompanyResponse deletedCompany = companyRepository.findResponseById(companyId).orElse(null);
+        if (deletedCompany != null) {
+            List<Integer> employeeIds = employeeRepository.findIdsByCompanyId(companyId);
+            employeeRepository.bulkDeleteByCompanyId(companyId);
+            companyRepository.bulkDeleteById(companyId);
+            employeeIds.forEach(nameIndex::remove);
         } else {
             throw new NoSuchDataException();
         }
-        return CompanyMapper.convertCompanyToCompanyResponse(fetchedCompany);
+        return deletedCompany;
+    }
+
+    @Scheduled(cron = "${company.employees-number.rebuild-cron}")
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.COMPANIES, allEntries = true)
+    public int rebuildEmployeesNumbers() {
+        int driftedCompanies = companyRepository.rebuildDriftedEmployeesNumbers();
+        if (driftedCompanies > 0) {
+            LOGGER.warn("rebuilt drifted employees number of {} companies", driftedCompanies);
+        }
+        return driftedCompanies;
+    }
+
+    private static int countEmployees(Company company) {
+        return company.getEmployees() == null ? 0 : company.getEmployees().size();
+    }
+
+    private Map<Integer, Employee> findCurrentEmployees(List<Employee> employees) {
+        List<Integer> employeeIds = employees.stream()
+                .map(Employee::getId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        Map<Integer, Employee> currentEmployees = new HashMap<>();
+        if (!employeeIds.isEmpty()) {
+            employeeRepository.findAllById(employeeIds).forEach(employee -> currentEmployees.put(employee.getId(), employee));
+        }
+        return currentEmployees;
     }
 }
@@ -0,0 +1,173 @@
+package com.thoughtworks.springbootemployee.service;
+
+import com.thoughtworks.springbootemployee.dto.EmployeeSuggestion;
+import com.thoughtworks.springbootemployee.repository.EmployeeRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// sorted "tokens\0id" keys turn a prefix lookup into a range scan that stops after the first few matches
+@Component
+public class EmployeeNameIndex {
+    public static final int MAX_SUGGESTIONS = 50;
+    private static final char ID_SEPARATOR = '\0';
+    private static final char PREFIX_END = Character.MAX_VALUE;
+    private static final String TOKEN_SEPARATOR = " ";
+    private static final Pattern TOKEN_DELIMITER = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final EmployeeRepository employeeRepository;
+    private final ConcurrentSkipListMap<String, Integer> entries = new ConcurrentSkipListMap<>();
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+    private final Object loadLock = new Object();
+    // non-null while load() scans: commits landing mid-scan are held here and replayed over the possibly older snapshot
+    private volatile List<Runnable> pending;
+
+    public EmployeeNameIndex(EmployeeRepository employeeRepository) {
+        this.employeeRepository = employeeRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        synchronized (loadLock) {
+            pending = new ArrayList<>();
+        }
+        try (Stream<EmployeeSuggestion> employees = employeeRepository.streamSuggestions()) {
+            employees.forEach(employee -> index(employee.getId(), employee.getName()));
+        } finally {
+            // replayed under the lock so a commit arriving now waits and still lands after every earlier one
+            synchronized (loadLock) {
+                pending.forEach(Runnable::run);
+                pending = null;
+            }
+        }
+    }
+
+    // writers call these inside their transaction; a rollback must not leave its names behind
+    public void put(Integer id, String name) {
+        afterCommit(() -> index(id, name));
+    }
+
+    // one synchronization per batch: the transaction manager sorts every registered synchronization at each commit phase
+    public void putAll(Map<Integer, String> employeeNames) {
+        afterCommit(() -> employeeNames.forEach(this::index));
+    }
+
+    public void remove(Integer id) {
+        afterCommit(() -> unindex(id));
+    }
+
+    // the swap runs inside compute, so two commits touching one id cannot interleave and leave both names' keys behind
+    private void index(Integer id, String name) {
+        names.compute(id, (key, previous) -> {
+            if (previous != null) {
+                removeKeys(previous, id);
+            }
+            if (name != null) {
+                for (String entry : keys(name, id)) {
+                    entries.put(entry, id);
+                }
+            }
+            return name;
+        });
+    }
+
+    private void unindex(Integer id) {
+        names.computeIfPresent(id, (key, previous) -> {
+            removeKeys(previous, id);
+            return null;
+        });
+    }
+
+    private void removeKeys(String name, Integer id) {
+        for (String key : keys(name, id)) {
+            entries.remove(key);
+        }
+    }
+
+    // names are keyed from every token onwards, so "karen j" is a prefix of the "karen jones" key of "Zach Karen Jones"
+    public List<EmployeeSuggestion> suggest(String query, int limit) {
+        String prefix = String.join(TOKEN_SEPARATOR, tokenize(query == null ? "" : query));
+        if (prefix.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (Integer id : entries.subMap(prefix, true, prefix + PREFIX_END, true).values()) {
+            if (ids.size() >= limit) {
+                break;
+            }
+            ids.add(id);
+        }
+        List<EmployeeSuggestion> suggestions = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            String name = names.get(id);
+            if (name != null) {
+                suggestions.add(new EmployeeSuggestion(id, name));
+            }
+        }
+        return suggestions;
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(action);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                apply(action);
+            }
+        });
+    }
+
+    private void apply(Runnable action) {
+        if (pending != null) {
+            synchronized (loadLock) {
+                if (pending != null) {
+                    pending.add(action);
+                    return;
+                }
+            }
+        }
+        action.run();
+    }
+
+    private static List<String> keys(String name, Integer id) {
+        List<String> nameTokens = tokenize(name);
+        List<String> keys = new ArrayList<>(nameTokens.size());
+        for (int i = 0; i < nameTokens.size(); i++) {
+            keys.add(String.join(TOKEN_SEPARATOR, nameTokens.subList(i, nameTokens.size())) + ID_SEPARATOR + id);
+        }
+        return keys;
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> result = new ArrayList<>();
+        for (String token : TOKEN_DELIMITER.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                result.add(token);
+            }
+        }
+        return result;
+    }
+}
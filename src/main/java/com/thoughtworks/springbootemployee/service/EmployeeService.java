@@ -1,84 +1,384 @@
 package com.thoughtworks.springbootemployee.service;
 
+import com.thoughtworks.springbootemployee.Mapper.CursorMapper;
 import com.thoughtworks.springbootemployee.Mapper.EmployeeMapper;
+import com.thoughtworks.springbootemployee.config.CacheConfig;
+import com.thoughtworks.springbootemployee.dto.CursorPage;
+import com.thoughtworks.springbootemployee.dto.EmployeeBulkUpdate;
 import com.thoughtworks.springbootemployee.dto.EmployeeResponse;
+import com.thoughtworks.springbootemployee.dto.EmployeeSearchCriteria;
+import com.thoughtworks.springbootemployee.dto.EmployeeStatistics;
+import com.thoughtworks.springbootemployee.dto.EmployeeSuggestion;
 import com.thoughtworks.springbootemployee.exception.IllegalOperationException;
 import com.thoughtworks.springbootemployee.exception.NoSuchDataException;
 import com.thoughtworks.springbootemployee.model.Employee;
+import com.thoughtworks.springbootemployee.repository.CompanyRepository;
 import com.thoughtworks.springbootemployee.repository.EmployeeRepository;
+import com.thoughtworks.springbootemployee.repository.EmployeeSpecifications;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 @Service
 public class EmployeeService {
 
+    public static final int BATCH_SIZE = 500;
+    private static final String ID = "id";
+    private static final List<String> SEARCH_SORT_FIELDS = Arrays.asList(ID, "name", "age", "salary");
+
     private final EmployeeRepository employeeRepository;
+    private final CompanyRepository companyRepository;
+    private final EmployeeNameIndex nameIndex;
+    @PersistenceContext
+    private EntityManager entityManager;
 
-    public EmployeeService(EmployeeRepository employeeRepository) {
+    public EmployeeService(EmployeeRepository employeeRepository, CompanyRepository companyRepository, EmployeeNameIndex nameIndex) {
         this.employeeRepository = employeeRepository;
+        this.companyRepository = companyRepository;
+        this.nameIndex = nameIndex;
     }
 
+    @Transactional(readOnly = true)
     public List<EmployeeResponse> getAll() {
-        List<EmployeeResponse> employeeResponses = new ArrayList<>();
-        List<Employee> employees = employeeRepository.findAll();
-        for(Employee employee: employees){
-            employeeResponses.add(EmployeeMapper.convertEntityToEmployeeResponse(employee));
+        return employeeRepository.findAllResponses();
+    }
+
+    @Transactional(readOnly = true)
+    public List<EmployeeResponse> getAll(Set<String> fields) {
+        return employeeRepository.findResponses(fields, null);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<EmployeeResponse> consumer) {
+        try (Stream<Employee> employees = employeeRepository.streamAll()) {
+            employees.forEach(employee -> {
+                consumer.accept(EmployeeMapper.convertEntityToEmployeeResponse(employee));
+                // keep the persistence context from growing with the table
+                entityManager.detach(employee);
+            });
         }
-        return employeeResponses;
     }
 
+    @Transactional(readOnly = true)
+    public Integer getEmployeeVersion(Integer id) {
+        return employeeRepository.findVersionById(id).orElse(null);
+    }
+
+    @Transactional(readOnly = true)
+    public String getEmployeesFingerprint() {
+        return employeeRepository.findListFingerprint();
+    }
+
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.EMPLOYEES, key = "#id")
     public EmployeeResponse getEmployeeById(Integer id) {
-        Employee employee = employeeRepository.findById(id).orElse(null);
-        return EmployeeMapper.convertEntityToEmployeeResponse(employee);
+        return findEmployeeResponse(id);
     }
 
-    public EmployeeResponse addEmployee(Employee employee) {
+    // a read-through fill that loaded a row before a write committed can store it after the write's eviction
+    @Transactional(readOnly = true)
+    @CachePut(cacheNames = CacheConfig.EMPLOYEES, key = "#id")
+    public EmployeeResponse reloadEmployeeById(Integer id) {
+        return findEmployeeResponse(id);
+    }
+
+    private EmployeeResponse findEmployeeResponse(Integer id) {
+        return employeeRepository.findById(id).map(EmployeeMapper::convertEntityToEmployeeResponse).orElse(null);
+    }
+
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.COMPANIES, allEntries = true)
+    public EmployeeResponse addEmployee(Employee employee) throws NoSuchDataException {
+        checkCompanyExists(employee.getCompanyId());
         Employee returnEmployee = employeeRepository.save(employee);
+        adjustEmployeesNumber(returnEmployee.getCompanyId(), 1);
+        nameIndex.put(returnEmployee.getId(), returnEmployee.getName());
         return EmployeeMapper.convertEntityToEmployeeResponse(returnEmployee);
     }
 
-    public EmployeeResponse updateEmployee(Integer employeeId, Employee employee) throws NoSuchDataException, IllegalOperationException {
-        if(!employeeId.equals(employee.getId())){
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.COMPANIES, allEntries = true)
+    public List<Integer> addEmployees(List<Employee> employees) throws IllegalOperationException {
+        Set<Integer> companyIds = new HashSet<>();
+        for (Employee employee : employees) {
+            validateImported(employee, companyIds);
+        }
+        return insertInBatches(employees.iterator(), companyIds);
+    }
+
+    // the whole stream is one transaction, so a bad row rolls back the batches already inserted; only one batch of rows
+    // is held at a time, besides the ids and names the response and the name index need
+    @Transactional(rollbackFor = IllegalOperationException.class)
+    @CacheEvict(cacheNames = CacheConfig.COMPANIES, allEntries = true)
+    public List<Integer> importEmployees(Stream<Employee> employees) throws IllegalOperationException {
+        return insertInBatches(employees.iterator(), new HashSet<>());
+    }
+
+    // companyIds holds the company ids already found to exist, so each is looked up once per request
+    private List<Integer> insertInBatches(Iterator<Employee> employees, Set<Integer> companyIds) throws IllegalOperationException {
+        List<Integer> ids = new ArrayList<>();
+        Map<Integer, String> names = new HashMap<>();
+        Map<Integer, Integer> addedByCompanyId = new HashMap<>();
+        List<Employee> batch = new ArrayList<>(BATCH_SIZE);
+        while (employees.hasNext()) {
+            Employee employee = employees.next();
+            validateImported(employee, companyIds);
+            batch.add(employee);
+            if (batch.size() == BATCH_SIZE) {
+                ids.addAll(insertBatch(batch, names, addedByCompanyId));
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            ids.addAll(insertBatch(batch, names, addedByCompanyId));
+        }
+        nameIndex.putAll(names);
+        addedByCompanyId.forEach(this::adjustEmployeesNumber);
+        return ids;
+    }
+
+    private List<Integer> insertBatch(List<Employee> batch, Map<Integer, String> names, Map<Integer, Integer> addedByCompanyId) {
+        List<Integer> ids = employeeRepository.batchInsert(batch);
+        for (int i = 0; i < ids.size(); i++) {
+            Employee employee = batch.get(i);
+            names.put(ids.get(i), employee.getName());
+            if (employee.getCompanyId() != null) {
+                addedByCompanyId.merge(employee.getCompanyId(), 1, Integer::sum);
+            }
+        }
+        return ids;
+    }
+
+    private void validateImported(Employee employee, Set<Integer> companyIds) throws IllegalOperationException {
+        if (employee == null || employee.getName() == null) {
+            throw new IllegalOperationException();
+        }
+        Integer companyId = employee.getCompanyId();
+        if (companyId != null && !companyIds.contains(companyId)) {
+            if (!companyRepository.existsById(companyId)) {
+                throw new IllegalOperationException();
+            }
+            companyIds.add(companyId);
+        }
+    }
+
+    // the employee's foreign key would otherwise reject the row at flush as a DataIntegrityViolationException
+    private void checkCompanyExists(Integer companyId) throws NoSuchDataException {
+        if (companyId != null && !companyRepository.existsById(companyId)) {
+            throw new NoSuchDataException();
+        }
+    }
+
+    @Transactional
+    @Caching(evict = {@CacheEvict(cacheNames = CacheConfig.EMPLOYEES, key = "#employeeId"),
+            @CacheEvict(cacheNames = CacheConfig.COMPANIES, allEntries = true)})
+    public EmployeeResponse updateEmployee(Integer employeeId, Employee employee, Integer expectedVersion) throws NoSuchDataException, IllegalOperationException {
+        if(employee == null || !employeeId.equals(employee.getId())){
             throw new IllegalOperationException();
         }
         Employee updatedEmployee = employeeRepository.findById(employeeId).orElse(null);
         if (updatedEmployee != null) {
+            if (expectedVersion != null && expectedVersion != updatedEmployee.getVersion()) {
+                throw new ObjectOptimisticLockingFailureException(Employee.class, employeeId);
+            }
 
             updatedEmployee.setName(employee.getName());
             updatedEmployee.setAge(employee.getAge());
             updatedEmployee.setGender(employee.getGender());
             updatedEmployee.setSalary(employee.getSalary());
+            // a missing companyId keeps the current company rather than unassigning the employee
+            if (employee.getCompanyId() != null && !Objects.equals(employee.getCompanyId(), updatedEmployee.getCompanyId())) {
+                checkCompanyExists(employee.getCompanyId());
+                adjustEmployeesNumber(updatedEmployee.getCompanyId(), -1);
+                adjustEmployeesNumber(employee.getCompanyId(), 1);
+                updatedEmployee.setCompanyId(employee.getCompanyId());
+            } else if (updatedEmployee.getCompanyId() != null) {
+                companyRepository.incrementVersion(updatedEmployee.getCompanyId());
+            }
             updatedEmployee = employeeRepository.save(updatedEmployee);
+            nameIndex.put(updatedEmployee.getId(), updatedEmployee.getName());
         }else {
             throw new NoSuchDataException();
         }
         return EmployeeMapper.convertEntityToEmployeeResponse(updatedEmployee);
     }
 
+    @Transactional
+    @Caching(evict = {@CacheEvict(cacheNames = CacheConfig.EMPLOYEES, key = "#id"),
+            @CacheEvict(cacheNames = CacheConfig.COMPANIES, allEntries = true)})
     public EmployeeResponse deleteEmployee(Integer id) throws NoSuchDataException {
         Employee deletedEmployee = employeeRepository.findById(id).orElse(null);
         if (deletedEmployee != null) {
             employeeRepository.delete(deletedEmployee);
+            adjustEmployeesNumber(deletedEmployee.getCompanyId(), -1);
+            nameIndex.remove(deletedEmployee.getId());
         }else {
             throw new NoSuchDataException();
         }
         return EmployeeMapper.convertEntityToEmployeeResponse(deletedEmployee);
     }
+
+    @Transactional
+    @Caching(evict = {@CacheEvict(cacheNames = CacheConfig.EMPLOYEES, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.COMPANIES, allEntries = true)})
+    public int deleteEmployees(List<Integer> ids) throws IllegalOperationException {
+        checkBulkIds(ids);
+        List<Integer> companyIds = employeeRepository.findCompanyIdsByIdIn(ids);
+        int deleted = employeeRepository.bulkDeleteByIdIn(ids);
+        if (!companyIds.isEmpty()) {
+            companyRepository.recountEmployeesNumbers(companyIds);
+        }
+        ids.forEach(nameIndex::remove);
+        return deleted;
+    }
+
+    @Transactional
+    @Caching(evict = {@CacheEvict(cacheNames = CacheConfig.EMPLOYEES, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.COMPANIES, allEntries = true)})
+    public int updateEmployees(EmployeeBulkUpdate update) throws IllegalOperationException, NoSuchDataException {
+        checkBulkIds(update.getIds());
+        if (update.getSalary() == null && update.getCompanyId() == null) {
+            throw new IllegalOperationException();
+        }
+        checkCompanyExists(update.getCompanyId());
+        Set<Integer> companyIds = new HashSet<>(employeeRepository.findCompanyIdsByIdIn(update.getIds()));
+        int updated = 0;
+        if (update.getSalary() != null) {
+            updated = employeeRepository.bulkUpdateSalary(update.getIds(), update.getSalary());
+        }
+        if (update.getCompanyId() != null) {
+            updated = employeeRepository.bulkUpdateCompanyId(update.getIds(), update.getCompanyId());
+            companyIds.add(update.getCompanyId());
+            // recounting versions the companies too
+            companyRepository.recountEmployeesNumbers(companyIds);
+        } else if (!companyIds.isEmpty()) {
+            // company responses embed their employees, so a salary change is a change to the company
+            companyRepository.incrementVersions(companyIds);
+        }
+        return updated;
+    }
+
+    private static void checkBulkIds(List<Integer> ids) throws IllegalOperationException {
+        if (ids == null || ids.isEmpty() || ids.contains(null)) {
+            throw new IllegalOperationException();
+        }
+    }
+
+    private void adjustEmployeesNumber(Integer companyId, int delta) {
+        if (companyId != null) {
+            companyRepository.adjustEmployeesNumber(companyId, delta);
+        }
+    }
+
+    public List<EmployeeSuggestion> suggestEmployees(String query, Integer limit) throws IllegalOperationException {
+        if (limit == null || limit < 1) {
+            throw new IllegalOperationException();
+        }
+        return nameIndex.suggest(query, Math.min(limit, EmployeeNameIndex.MAX_SUGGESTIONS));
+    }
+
+    @Transactional(readOnly = true)
+    public List<EmployeeStatistics> getStatistics(String field, List<String> groupBy) throws IllegalOperationException {
+        try {
+            return employeeRepository.aggregate(field, groupBy);
+        } catch (InvalidDataAccessApiUsageException e) {
+            throw new IllegalOperationException();
+        }
+    }
+
     //todo convert response
+    @Transactional(readOnly = true)
     public Page<Employee> getEmployeesByPage(Integer page, Integer pageSize) {
         return employeeRepository.findAll(PageRequest.of(page - 1, pageSize));
     }
 
-    public List<EmployeeResponse> getEmployeesByGender(String gender) {
-        List<EmployeeResponse> employeeResponses = new ArrayList<>();
-        List<Employee> employees =employeeRepository.findByGender(gender);
-        for(Employee employee : employees){
-            employeeResponses.add(EmployeeMapper.convertEntityToEmployeeResponse(employee));
+    @Transactional(readOnly = true)
+    public CursorPage<EmployeeResponse> getEmployeesAfter(String after, Integer limit) throws IllegalOperationException {
+        int cursor = CursorMapper.decode(after);
+        int size = CursorMapper.checkLimit(limit);
+        List<Employee> employees = employeeRepository.findNextPage(cursor, PageRequest.of(0, size + 1));
+        return CursorMapper.toCursorPage(employees, size, Employee::getId, EmployeeMapper::convertEntityToEmployeeResponse);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<EmployeeResponse> searchEmployees(EmployeeSearchCriteria criteria) throws IllegalOperationException {
+        String sortField = criteria.getSort() == null ? ID : criteria.getSort();
+        if (!SEARCH_SORT_FIELDS.contains(sortField)) {
+            throw new IllegalOperationException();
+        }
+        Sort.Direction direction = criteria.getDirection() == null ? Sort.Direction.ASC
+                : Sort.Direction.fromOptionalString(criteria.getDirection()).orElseThrow(IllegalOperationException::new);
+        boolean ascending = direction.isAscending();
+        int size = CursorMapper.checkLimit(criteria.getLimit());
+
+        Specification<Employee> specification = EmployeeSpecifications.matching(criteria);
+        if (ID.equals(sortField)) {
+            if (criteria.getAfter() != null && !criteria.getAfter().isEmpty()) {
+                specification = specification.and(EmployeeSpecifications.afterId(CursorMapper.decode(criteria.getAfter()), ascending));
+            }
+            List<Employee> employees = employeeRepository.search(specification, Sort.by(direction, ID), size + 1);
+            return CursorMapper.toCursorPage(employees, size, Employee::getId, EmployeeMapper::convertEntityToEmployeeResponse);
         }
-        return employeeResponses;
+        // rows without a sort value have no position in the key, so a sorted search leaves them out
+        specification = specification.and(EmployeeSpecifications.isNotNull(sortField));
+        Map.Entry<Integer, String> after = CursorMapper.decodeKey(criteria.getAfter());
+        if (after != null) {
+            specification = specification.and("name".equals(sortField)
+                    ? EmployeeSpecifications.after(sortField, after.getValue(), after.getKey(), ascending)
+                    : EmployeeSpecifications.after(sortField, parseSortValue(after.getValue()), after.getKey(), ascending));
+        }
+        List<Employee> employees = employeeRepository.search(specification, Sort.by(direction, sortField, ID), size + 1);
+        Function<Employee, Object> sortValueOf = sortValueGetter(sortField);
+        return CursorMapper.toKeysetPage(employees, size,
+                employee -> CursorMapper.encode(employee.getId(), sortValueOf.apply(employee)),
+                EmployeeMapper::convertEntityToEmployeeResponse);
+    }
+
+    private static Integer parseSortValue(String value) throws IllegalOperationException {
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalOperationException();
+        }
+    }
+
+    private static Function<Employee, Object> sortValueGetter(String sortField) {
+        switch (sortField) {
+            case "name":
+                return Employee::getName;
+            case "age":
+                return Employee::getAge;
+            default:
+                return Employee::getSalary;
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<EmployeeResponse> getEmployeesByGender(String gender) {
+        return employeeRepository.findResponsesByGender(gender);
     }
 }
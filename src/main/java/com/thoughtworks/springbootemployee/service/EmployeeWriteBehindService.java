@@ -0,0 +1,538 @@
+package com.thoughtworks.springbootemployee.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.thoughtworks.springbootemployee.Mapper.EmployeeMapper;
+import com.thoughtworks.springbootemployee.dto.EmployeeRequest;
+import com.thoughtworks.springbootemployee.dto.EmployeeWriteStatus;
+import com.thoughtworks.springbootemployee.exception.IllegalOperationException;
+import com.thoughtworks.springbootemployee.exception.NoSuchDataException;
+import com.thoughtworks.springbootemployee.exception.WriteQueueFullException;
+import com.thoughtworks.springbootemployee.model.Employee;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Accepted writes are journalled and fsynced before the 202, applied in coalesced batches by one writer thread,
+// and marked done afterwards. A crash between applying and marking replays the batch: delivery is at-least-once.
+// Only validation and If-Match failures mark a write FAILED; any other failure, such as a lost connection,
+// leaves the write journalled and the writer retries it, ahead of later writes, with exponential backoff.
+// The journal is rolled into numbered segments, so it is compacted while writes keep arriving, not only when it drains.
+@Service
+@ConditionalOnProperty(prefix = "employee.write-behind", name = "enabled", havingValue = "true")
+public class EmployeeWriteBehindService {
+    public static final String CREATE = "CREATE";
+    public static final String UPDATE = "UPDATE";
+    private static final String DONE = "DONE";
+    private static final int STATUS_CAPACITY = 100_000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 30_000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmployeeWriteBehindService.class);
+
+    private final EmployeeService employeeService;
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<JournalEntry> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final Path journalPath;
+    private final int segmentEntries;
+    private final Cache<String, EmployeeWriteStatus> statuses = Caffeine.newBuilder()
+            .maximumSize(STATUS_CAPACITY)
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
+    // submitters and the writer take this lock to keep the journal consistent with the queue
+    private final Object journalLock = new Object();
+    private FileChannel journal;
+    // writes not yet done by the segment they were journalled in; the active journal becomes segment activeSegment
+    // when it is rolled. A DONE marker is always appended after its write, so a segment can be deleted once it and
+    // every segment before it have nothing outstanding, never out of order
+    private final NavigableMap<Long, Integer> outstandingBySegment = new TreeMap<>();
+    private long activeSegment;
+    private int activeEntries;
+    private ScheduledExecutorService writer;
+    // accepted before anything still queued, so the writer takes these first; only the writer touches them
+    private final List<JournalEntry> retrying = new ArrayList<>();
+    private long retryDelayMillis;
+    private long retryAtNanos;
+
+    public EmployeeWriteBehindService(EmployeeService employeeService, ObjectMapper objectMapper,
+                                      @Value("${employee.write-behind.capacity}") int capacity,
+                                      @Value("${employee.write-behind.batch-size}") int batchSize,
+                                      @Value("${employee.write-behind.flush-interval-ms}") long flushIntervalMillis,
+                                      @Value("${employee.write-behind.journal}") String journalPath,
+                                      @Value("${employee.write-behind.segment-entries}") int segmentEntries) {
+        this.employeeService = employeeService;
+        this.objectMapper = objectMapper;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.journalPath = Paths.get(journalPath);
+        this.segmentEntries = segmentEntries;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        List<JournalEntry> pending = readPendingEntries();
+        journal = openJournal();
+        if (!pending.isEmpty()) {
+            LOGGER.info("replaying {} journalled employee writes", pending.size());
+            retrying.addAll(pending);
+        }
+        synchronized (journalLock) {
+            compact();
+        }
+        // replayed writes that fail again stay journalled and are retried by the writer
+        flush();
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "employee-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::flushSafely, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // the last flush runs on the writer thread, after any flush already running there, so nothing else touches the
+    // retry list or the journal meanwhile; writes it leaves behind stay journalled and are replayed on the next start
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        writer.execute(this::flushSafely);
+        writer.shutdown();
+        if (!writer.awaitTermination(flushIntervalMillis * 10, TimeUnit.MILLISECONDS)) {
+            LOGGER.warn("employee write-behind writer is still flushing, leaving the journal open");
+            return;
+        }
+        journal.close();
+    }
+
+    public EmployeeWriteStatus submitCreate(EmployeeRequest employeeRequest) throws IllegalOperationException, WriteQueueFullException {
+        if (employeeRequest == null || employeeRequest.getName() == null) {
+            throw new IllegalOperationException();
+        }
+        return submit(new JournalEntry(UUID.randomUUID().toString(), CREATE, null, null, employeeRequest));
+    }
+
+    public EmployeeWriteStatus submitUpdate(Integer employeeId, EmployeeRequest employeeRequest, Integer expectedVersion) throws IllegalOperationException, WriteQueueFullException {
+        if (employeeRequest == null || !employeeId.equals(employeeRequest.getId())) {
+            throw new IllegalOperationException();
+        }
+        return submit(new JournalEntry(UUID.randomUUID().toString(), UPDATE, employeeId, expectedVersion, employeeRequest));
+    }
+
+    public EmployeeWriteStatus getStatus(String trackingId) {
+        return statuses.getIfPresent(trackingId);
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private EmployeeWriteStatus submit(JournalEntry entry) throws WriteQueueFullException {
+        EmployeeWriteStatus status = new EmployeeWriteStatus(entry.getTrackingId(), EmployeeWriteStatus.ACCEPTED, entry.getEmployeeId());
+        synchronized (journalLock) {
+            // only the writer takes from the queue, so checking before journalling guarantees the add below succeeds
+            if (queue.remainingCapacity() == 0) {
+                throw new WriteQueueFullException();
+            }
+            entry.setSegment(activeSegment);
+            append(Collections.singletonList(entry));
+            outstandingBySegment.merge(entry.getSegment(), 1, Integer::sum);
+            statuses.put(entry.getTrackingId(), status);
+            queue.add(entry);
+        }
+        return status;
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // an exception would cancel the schedule and strand every later write
+            LOGGER.error("employee write-behind flush failed", e);
+        }
+    }
+
+    void flush() {
+        if (retryDelayMillis > 0 && System.nanoTime() - retryAtNanos < 0) {
+            return;
+        }
+        List<JournalEntry> batch = nextBatch();
+        while (!batch.isEmpty()) {
+            Set<JournalEntry> done = Collections.newSetFromMap(new IdentityHashMap<>());
+            boolean complete = apply(batch, done);
+            List<JournalEntry> doneEntries = new ArrayList<>(done.size());
+            for (JournalEntry entry : done) {
+                doneEntries.add(new JournalEntry(entry.getTrackingId(), DONE, null, null, null));
+            }
+            synchronized (journalLock) {
+                append(doneEntries);
+                for (JournalEntry entry : done) {
+                    outstandingBySegment.merge(entry.getSegment(), -1, Integer::sum);
+                }
+                compact();
+            }
+            if (!complete) {
+                batch.removeIf(done::contains);
+                retrying.addAll(0, batch);
+                retryDelayMillis = retryDelayMillis == 0 ? flushIntervalMillis : Math.min(retryDelayMillis * 2, MAX_RETRY_DELAY_MILLIS);
+                retryAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryDelayMillis);
+                LOGGER.warn("retrying {} employee writes in {} ms", retrying.size(), retryDelayMillis);
+                return;
+            }
+            retryDelayMillis = 0;
+            batch = nextBatch();
+        }
+    }
+
+    private List<JournalEntry> nextBatch() {
+        List<JournalEntry> batch = new ArrayList<>(batchSize);
+        List<JournalEntry> retried = retrying.subList(0, Math.min(batchSize, retrying.size()));
+        batch.addAll(retried);
+        retried.clear();
+        queue.drainTo(batch, batchSize - batch.size());
+        return batch;
+    }
+
+    // adds every write it marks WRITTEN or FAILED to done; false when a failure worth retrying stopped it early
+    private boolean apply(List<JournalEntry> batch, Set<JournalEntry> done) {
+        List<JournalEntry> creates = new ArrayList<>();
+        Map<Integer, List<JournalEntry>> updatesByEmployeeId = new LinkedHashMap<>();
+        for (JournalEntry entry : batch) {
+            if (CREATE.equals(entry.getType())) {
+                creates.add(entry);
+            } else {
+                updatesByEmployeeId.computeIfAbsent(entry.getEmployeeId(), employeeId -> new ArrayList<>()).add(entry);
+            }
+        }
+        if (!applyCreates(creates, done)) {
+            return false;
+        }
+        for (Map.Entry<Integer, List<JournalEntry>> updates : updatesByEmployeeId.entrySet()) {
+            if (!applyUpdates(updates.getKey(), updates.getValue(), done)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean applyCreates(List<JournalEntry> creates, Set<JournalEntry> done) {
+        if (creates.isEmpty()) {
+            return true;
+        }
+        List<Employee> employees = new ArrayList<>(creates.size());
+        for (JournalEntry entry : creates) {
+            employees.add(EmployeeMapper.convertEmployeeRequestToEntity(entry.getEmployee()));
+        }
+        try {
+            List<Integer> ids = employeeService.addEmployees(employees);
+            for (int i = 0; i < creates.size(); i++) {
+                markStatus(creates.get(i), EmployeeWriteStatus.WRITTEN, ids.get(i));
+            }
+            done.addAll(creates);
+            return true;
+        } catch (IllegalOperationException | RuntimeException e) {
+            if (creates.size() == 1) {
+                return markFailedIfPermanent(creates, null, e, done);
+            }
+            // one bad row must not fail the rest of the batch
+            for (JournalEntry entry : creates) {
+                if (!applyCreates(Collections.singletonList(entry), done)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // Unconditional updates in a row overwrite each other, so only the last of them is written. An If-Match update
+    // is checked against the version the updates before it leave behind, so it is applied on its own, in order.
+    private boolean applyUpdates(Integer employeeId, List<JournalEntry> updates, Set<JournalEntry> done) {
+        int from = 0;
+        while (from < updates.size()) {
+            int to = from + 1;
+            if (updates.get(from).getExpectedVersion() == null) {
+                while (to < updates.size() && updates.get(to).getExpectedVersion() == null) {
+                    to++;
+                }
+            }
+            if (!applyUpdate(employeeId, updates.subList(from, to), done)) {
+                return false;
+            }
+            from = to;
+        }
+        return true;
+    }
+
+    private boolean applyUpdate(Integer employeeId, List<JournalEntry> superseding, Set<JournalEntry> done) {
+        JournalEntry latest = superseding.get(superseding.size() - 1);
+        try {
+            employeeService.updateEmployee(employeeId, EmployeeMapper.convertEmployeeRequestToEntity(latest.getEmployee()),
+                    latest.getExpectedVersion());
+        } catch (NoSuchDataException | IllegalOperationException | RuntimeException e) {
+            if (superseding.size() == 1) {
+                return markFailedIfPermanent(superseding, employeeId, e, done);
+            }
+            // the rejected update must not take the valid ones it would have superseded down with it
+            for (JournalEntry entry : superseding) {
+                if (!applyUpdate(employeeId, Collections.singletonList(entry), done)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        for (JournalEntry entry : superseding) {
+            markStatus(entry, EmployeeWriteStatus.WRITTEN, employeeId);
+        }
+        done.addAll(superseding);
+        return true;
+    }
+
+    private boolean markFailedIfPermanent(List<JournalEntry> entries, Integer employeeId, Exception e, Set<JournalEntry> done) {
+        if (!isPermanent(e)) {
+            LOGGER.warn("employee write {} failed, will retry", entries.get(0).getTrackingId(), e);
+            return false;
+        }
+        LOGGER.warn("employee write {} failed", entries.get(0).getTrackingId(), e);
+        for (JournalEntry entry : entries) {
+            markStatus(entry, EmployeeWriteStatus.FAILED, employeeId);
+        }
+        done.addAll(entries);
+        return true;
+    }
+
+    // validation and precondition failures fail again however often they are retried
+    private static boolean isPermanent(Exception e) {
+        return e instanceof IllegalOperationException
+                || e instanceof NoSuchDataException
+                || e instanceof OptimisticLockingFailureException
+                || e instanceof DataIntegrityViolationException;
+    }
+
+    private void markStatus(JournalEntry entry, String state, Integer employeeId) {
+        statuses.put(entry.getTrackingId(), new EmployeeWriteStatus(entry.getTrackingId(), state, employeeId));
+    }
+
+    private void append(List<JournalEntry> entries) {
+        try {
+            StringBuilder lines = new StringBuilder();
+            for (JournalEntry entry : entries) {
+                lines.append(objectMapper.writeValueAsString(entry)).append('\n');
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                journal.write(buffer);
+            }
+            journal.force(false);
+            activeEntries += entries.size();
+            if (activeEntries >= segmentEntries) {
+                roll();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void roll() throws IOException {
+        journal.close();
+        Files.move(journalPath, segmentPath(activeSegment));
+        outstandingBySegment.putIfAbsent(activeSegment, 0);
+        activeSegment++;
+        activeEntries = 0;
+        journal = openJournal();
+    }
+
+    private void compact() {
+        try {
+            Map.Entry<Long, Integer> oldest = outstandingBySegment.firstEntry();
+            while (oldest != null && oldest.getKey() < activeSegment && oldest.getValue() == 0) {
+                Files.deleteIfExists(segmentPath(oldest.getKey()));
+                outstandingBySegment.pollFirstEntry();
+                oldest = outstandingBySegment.firstEntry();
+            }
+            if (activeEntries > 0 && outstandingBySegment.headMap(activeSegment).isEmpty()
+                    && outstandingBySegment.getOrDefault(activeSegment, 0) == 0) {
+                journal.truncate(0);
+                activeEntries = 0;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private FileChannel openJournal() throws IOException {
+        return FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path segmentPath(long segment) {
+        return journalPath.resolveSibling(journalPath.getFileName() + "." + segment);
+    }
+
+    private List<Long> rolledSegments() throws IOException {
+        Path directory = journalPath.toAbsolutePath().getParent();
+        String prefix = journalPath.getFileName() + ".";
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(prefix.length());
+                if (suffix.matches("\\d+")) {
+                    segments.add(Long.valueOf(suffix));
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    // rolled segments are read oldest first and the active journal last, which is the order they were written in
+    private List<JournalEntry> readPendingEntries() throws IOException {
+        Map<String, JournalEntry> pending = new LinkedHashMap<>();
+        List<Long> rolled = rolledSegments();
+        for (Long segment : rolled) {
+            outstandingBySegment.put(segment, 0);
+            readSegment(segmentPath(segment), segment, pending);
+        }
+        activeSegment = rolled.isEmpty() ? 1 : rolled.get(rolled.size() - 1) + 1;
+        activeEntries = readSegment(journalPath, activeSegment, pending);
+        for (JournalEntry entry : pending.values()) {
+            outstandingBySegment.merge(entry.getSegment(), 1, Integer::sum);
+        }
+        return new ArrayList<>(pending.values());
+    }
+
+    // returns the number of lines in the segment
+    private int readSegment(Path path, long segment, Map<String, JournalEntry> pending) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        int lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                lines++;
+                JournalEntry entry;
+                try {
+                    entry = objectMapper.readValue(line, JournalEntry.class);
+                } catch (IOException e) {
+                    // a torn last line was never acknowledged
+                    LOGGER.warn("skipping unreadable employee journal line");
+                    continue;
+                }
+                if (DONE.equals(entry.getType())) {
+                    pending.remove(entry.getTrackingId());
+                } else {
+                    entry.setSegment(segment);
+                    pending.put(entry.getTrackingId(), entry);
+                    statuses.put(entry.getTrackingId(), new EmployeeWriteStatus(entry.getTrackingId(), EmployeeWriteStatus.ACCEPTED, entry.getEmployeeId()));
+                }
+            }
+        }
+        return lines;
+    }
+
+    public static class JournalEntry {
+        private String trackingId;
+        private String type;
+        private Integer employeeId;
+        private Integer expectedVersion;
+        private EmployeeRequest employee;
+        private long segment;
+
+        public JournalEntry() {
+        }
+
+        public JournalEntry(String trackingId, String type, Integer employeeId, Integer expectedVersion, EmployeeRequest employee) {
+            this.trackingId = trackingId;
+            this.type = type;
+            this.employeeId = employeeId;
+            this.expectedVersion = expectedVersion;
+            this.employee = employee;
+        }
+
+        public String getTrackingId() {
+            return trackingId;
+        }
+
+        public void setTrackingId(String trackingId) {
+            this.trackingId = trackingId;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+
+        public Integer getEmployeeId() {
+            return employeeId;
+        }
+
+        public void setEmployeeId(Integer employeeId) {
+            this.employeeId = employeeId;
+        }
+
+        public Integer getExpectedVersion() {
+            return expectedVersion;
+        }
+
+        public void setExpectedVersion(Integer expectedVersion) {
+            this.expectedVersion = expectedVersion;
+        }
+
+        public EmployeeRequest getEmployee() {
+            return employee;
+        }
+
+        public void setEmployee(EmployeeRequest employee) {
+            this.employee = employee;
+        }
+
+        @JsonIgnore
+        public long getSegment() {
+            return segment;
+        }
+
+        @JsonIgnore
+        public void setSegment(long segment) {
+            this.segment = segment;
+        }
+    }
+}
@@ -0,0 +1,3 @@
+CREATE INDEX idx_employee_gender ON employee(gender);
+CREATE INDEX idx_employee_company_id ON employee(company_id);
+ALTER TABLE employee ADD CONSTRAINT fk_employee_company FOREIGN KEY (company_id) REFERENCES company(id);
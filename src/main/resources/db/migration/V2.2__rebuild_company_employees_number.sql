@@ -0,0 +1 @@
+UPDATE company c SET employees_number = (SELECT COUNT(*) FROM employee e WHERE e.company_id = c.id);
@@ -0,0 +1,3 @@
+CREATE INDEX idx_employee_age ON employee(age, id);
+CREATE INDEX idx_employee_salary ON employee(salary, id);
+CREATE INDEX idx_employee_name ON employee(name, id);
@@ -0,0 +1,2 @@
+ALTER TABLE employee ADD COLUMN version INT DEFAULT 0 NOT NULL;
+ALTER TABLE company ADD COLUMN version INT DEFAULT 0 NOT NULL;
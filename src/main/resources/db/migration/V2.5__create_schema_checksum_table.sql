@@ -0,0 +1,3 @@
+CREATE TABLE schema_checksum(
+    checksum VARCHAR(64) NOT NULL
+);
@@ -1,8 +1,14 @@
 package com.thoughtworks.springbootemployee.intergration;
 
+import com.jayway.jsonpath.JsonPath;
+import com.thoughtworks.springbootemployee.Mapper.CursorMapper;
 import com.thoughtworks.springbootemployee.model.Company;
 import com.thoughtworks.springbootemployee.model.Employee;
 import com.thoughtworks.springbootemployee.repository.CompanyRepository;
+import com.thoughtworks.springbootemployee.repository.EmployeeRepository;
+import com.thoughtworks.springbootemployee.service.CompanyService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,15 +16,21 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -27,19 +39,45 @@ public class CompanyIntegrationTest {
     private MockMvc mockMvc;
     @Autowired
     private CompanyRepository companyRepository;
+    @Autowired
+    private EmployeeRepository employeeRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private CompanyService companyService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
     private final List<Company> testCompanies = Arrays.asList(
             new Company(1, "OOCL", 1, Collections.singletonList(
-                    new Employee(1, "zach", 20, "male", 5000, 1))),
+                    new Employee(1, "zach", 20, "male", 5000))),
             new Company(2, "TW", 1, Collections.singletonList(
-                    new Employee(2, "woody", 22, "male", 6000, 2))),
+                    new Employee(2, "woody", 22, "male", 6000))),
             new Company(3, "Alibaba", 1, Collections.singletonList(
-                    new Employee(3, "hzh", 22, "male", 7000, 3)))
+                    new Employee(3, "hzh", 22, "male", 7000)))
     );
 
     @AfterEach
     private void afterAll() {
         companyRepository.deleteAll();
+        entityManagerFactory.unwrap(SessionFactory.class).getStatistics().setStatisticsEnabled(false);
+    }
+
+    private Statistics startCountingStatements() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        return statistics;
+    }
+
+    private List<Company> saveCompaniesWithEmployees(int companyCount) {
+        List<Company> companies = new ArrayList<>();
+        for (int i = 0; i < companyCount; i++) {
+            companies.add(new Company(null, "company" + i, 2, Arrays.asList(
+                    new Employee(null, "zach" + i, 20, "male", 5000),
+                    new Employee(null, "york" + i, 22, "female", 6000))));
+        }
+        return companyRepository.saveAll(companies);
     }
 
     @Test
@@ -55,10 +93,81 @@ public class CompanyIntegrationTest {
                 .andExpect(jsonPath("$[0].employeesNumber").value(1));
     }
 
+    @Test
+    void should_issue_three_statements_when_hit_get_all_companies_given_companies_with_employees() throws Exception {
+        //given
+        saveCompaniesWithEmployees(5);
+        Statistics statistics = startCountingStatements();
+
+        //when
+        mockMvc.perform(get("/companies"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(5)))
+                .andExpect(jsonPath("$[4].employees", hasSize(2)));
+
+        //then one ETag fingerprint + one company projection + one employee select
+        assertEquals(3, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void should_skip_employee_select_when_hit_get_all_companies_given_fields_without_employees() throws Exception {
+        //given
+        saveCompaniesWithEmployees(5);
+        Statistics statistics = startCountingStatements();
+
+        //when
+        mockMvc.perform(get("/companies?fields=id,companyName"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(5)))
+                .andExpect(jsonPath("$[0].companyName").value("company0"))
+                .andExpect(jsonPath("$[0].employeesNumber").doesNotExist())
+                .andExpect(jsonPath("$[0].employees").doesNotExist());
+
+        //then one ETag fingerprint + one company projection, the employee table is never read
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void should_return_requested_fields_when_hit_get_company_and_company_employees_endpoints_given_fields() throws Exception {
+        //given
+        Company company = saveCompaniesWithEmployees(1).get(0);
+
+        //then
+        mockMvc.perform(get("/companies/" + company.getId() + "?fields=employeesNumber"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.employeesNumber").value(2))
+                .andExpect(jsonPath("$.id").doesNotExist())
+                .andExpect(jsonPath("$.employees").doesNotExist());
+        mockMvc.perform(get("/companies/" + company.getId() + "/employees?fields=name"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].name").value("zach0"))
+                .andExpect(jsonPath("$[0].id").doesNotExist())
+                .andExpect(jsonPath("$[0].salary").doesNotExist());
+        mockMvc.perform(get("/companies?fields=id,unknown"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void should_batch_fetch_employees_when_hit_get_company_by_page_endpoint_given_companies_with_employees() throws Exception {
+        //given
+        saveCompaniesWithEmployees(5);
+        Statistics statistics = startCountingStatements();
+
+        //when
+        mockMvc.perform(get("/companies?page=1&pageSize=4"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(4)))
+                .andExpect(jsonPath("$.content[3].employees", hasSize(2)));
+
+        //then page select + count + one batched employee select
+        assertEquals(3, statistics.getPrepareStatementCount());
+    }
+
     @Test
     void should_return_companies_when_hit_get_company_by_page_endpoint_given_page_and_page_size() throws Exception {
         //given
-        companyRepository.saveAll(testCompanies);
+        saveCompaniesWithEmployees(3);
         int page = 1;
         int pageSize = 1;
 
@@ -66,8 +175,21 @@ public class CompanyIntegrationTest {
         mockMvc.perform(get("/companies?page=" + page + "&pageSize=" + pageSize))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.content", hasSize(pageSize)))
-                .andExpect(jsonPath("$.totalPages").value(2))
-                .andExpect(jsonPath("$.totalElements").value(2));
+                .andExpect(jsonPath("$.totalPages").value(3))
+                .andExpect(jsonPath("$.totalElements").value(3));
+    }
+
+    @Test
+    void should_return_companies_after_cursor_when_hit_get_company_by_cursor_endpoint_given_limit() throws Exception {
+        //given
+        List<Company> companies = saveCompaniesWithEmployees(3);
+
+        //when
+        mockMvc.perform(get("/companies?limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(2)))
+                .andExpect(jsonPath("$.content[0].id").value(companies.get(0).getId()))
+                .andExpect(jsonPath("$.nextCursor").value(CursorMapper.encode(companies.get(1).getId())));
     }
 
     @Test
@@ -84,6 +206,58 @@ public class CompanyIntegrationTest {
                 .andExpect(jsonPath("$.employees", hasSize(1)));
     }
 
+    @Test
+    void should_return_not_found_when_hit_get_company_by_id_given_id_not_exists() throws Exception {
+        //when
+        mockMvc.perform(get("/companies/" + Integer.MAX_VALUE))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void should_return_new_etag_when_hit_get_company_by_id_given_one_of_its_employees_updated() throws Exception {
+        //given
+        Company company = saveCompaniesWithEmployees(1).get(0);
+        String eTag = mockMvc.perform(get("/companies/" + company.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get("/companies/" + company.getId()).header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+        Employee employee = company.getEmployees().get(0);
+
+        //when
+        mockMvc.perform(put("/employees/" + employee.getId()).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"id\": " + employee.getId() + ", \"name\": \"renamed\", \"age\": 20, \"gender\": \"male\", \"salary\": 5000}"))
+                .andExpect(status().isOk());
+
+        //then
+        mockMvc.perform(get("/companies/" + company.getId()).header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.employees[0].name").value("renamed"));
+        mockMvc.perform(get("/companies").header("If-None-Match", eTag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void should_serve_current_company_under_its_own_etag_when_hit_get_company_by_id_given_stale_body_cached() throws Exception {
+        //given
+        Company company = saveCompaniesWithEmployees(1).get(0);
+        String staleETag = mockMvc.perform(get("/companies/" + company.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        transactionTemplate.execute(status -> companyRepository.incrementVersion(company.getId()));
+
+        //when
+        String eTag = mockMvc.perform(get("/companies/" + company.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        //then
+        assertNotEquals(staleETag, eTag);
+        assertEquals("\"" + companyRepository.findVersionById(company.getId()).get() + "\"", eTag);
+        mockMvc.perform(get("/companies/" + company.getId()).header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+    }
+
     @Test
     void should_return_employees_when_hit_get_company_employees_by_id_given_company_id() throws Exception {
         //given
@@ -100,6 +274,90 @@ public class CompanyIntegrationTest {
                 .andExpect(jsonPath("$.employees[0].companyId").isNumber());
     }
 
+    @Test
+    void should_return_employees_page_when_hit_get_company_employees_by_page_endpoint_given_page_and_page_size() throws Exception {
+        //given
+        Company company = saveCompaniesWithEmployees(1).get(0);
+
+        //when
+        mockMvc.perform(get("/companies/" + company.getId() + "/employees?page=2&pageSize=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].name").value("york0"))
+                .andExpect(jsonPath("$.totalElements").value(2));
+    }
+
+    @Test
+    void should_return_employees_after_cursor_when_hit_get_company_employees_by_cursor_endpoint_given_limit() throws Exception {
+        //given
+        Company company = saveCompaniesWithEmployees(2).get(1);
+
+        //when
+        mockMvc.perform(get("/companies/" + company.getId() + "/employees?limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].name").value("zach1"))
+                .andExpect(jsonPath("$.nextCursor").isString());
+    }
+
+    @Test
+    void should_stream_employees_when_hit_get_company_employees_endpoint_given_accept_ndjson() throws Exception {
+        //given
+        Company company = saveCompaniesWithEmployees(2).get(1);
+
+        //when
+        MvcResult result = mockMvc.perform(get("/companies/" + company.getId() + "/employees").accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+        //then
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"name\":\"zach1\""));
+        assertTrue(lines[1].contains("\"name\":\"york1\""));
+    }
+
+    @Test
+    void should_keep_employees_number_when_hit_employee_endpoints_given_employee_added_moved_and_deleted() throws Exception {
+        //given
+        List<Company> companies = saveCompaniesWithEmployees(2);
+        Integer from = companies.get(0).getId();
+        Integer to = companies.get(1).getId();
+        MvcResult created = mockMvc.perform(post("/employees").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\": \"hzh\", \"age\": 20, \"gender\": \"male\", \"salary\": 1000, \"companyId\": " + from + "}"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        Integer employeeId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+        mockMvc.perform(get("/companies/" + from)).andExpect(jsonPath("$.employeesNumber").value(3));
+
+        //when
+        mockMvc.perform(put("/employees/" + employeeId).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"id\": " + employeeId + ", \"name\": \"hzh\", \"age\": 20, \"gender\": \"male\", \"salary\": 1000, \"companyId\": " + to + "}"))
+                .andExpect(status().isOk());
+
+        //then
+        mockMvc.perform(get("/companies/" + from)).andExpect(jsonPath("$.employeesNumber").value(2));
+        mockMvc.perform(get("/companies/" + to)).andExpect(jsonPath("$.employeesNumber").value(3));
+        mockMvc.perform(delete("/employees/" + employeeId)).andExpect(status().isAccepted());
+        mockMvc.perform(get("/companies/" + to)).andExpect(jsonPath("$.employeesNumber").value(2));
+    }
+
+    @Test
+    void should_rebuild_drifted_employees_number_when_rebuild_employees_numbers_given_company_with_wrong_number() {
+        //given
+        List<Company> companies = saveCompaniesWithEmployees(2);
+        Company drifted = companies.get(0);
+        transactionTemplate.execute(status -> companyRepository.adjustEmployeesNumber(drifted.getId(), 5));
+
+        //when
+        int rebuilt = companyService.rebuildEmployeesNumbers();
+
+        //then
+        assertEquals(1, rebuilt);
+        assertEquals(2, companyRepository.findById(drifted.getId()).get().getEmployeesNumber());
+    }
+
     @Test
     void should_return_company_when_hit_add_company_endpoint_given_company() throws Exception {
         //given
@@ -161,10 +419,35 @@ public class CompanyIntegrationTest {
         //then
         mockMvc.perform(delete("/companies/" + company.getId()).contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isAccepted())
-                .andExpect(jsonPath("$.employees[0].id").isNumber())
-                .andExpect(jsonPath("$.employees[0].name").value("zach"))
-                .andExpect(jsonPath("$.employees[0].age").value(20))
-                .andExpect(jsonPath("$.employees[0].gender").value("male"))
-                .andExpect(jsonPath("$.employees[0].salary").value(5000));
+                .andExpect(jsonPath("$.id").value(company.getId()))
+                .andExpect(jsonPath("$.companyName").value("OOCL"))
+                .andExpect(jsonPath("$.employeesNumber").value(1));
+        assertEquals(0, employeeRepository.count());
+    }
+
+    @Test
+    void should_issue_same_statements_when_hit_delete_company_endpoint_given_companies_of_different_headcount() throws Exception {
+        //given
+        Company small = saveCompaniesWithEmployees(1).get(0);
+        List<Employee> employees = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            employees.add(new Employee(null, "zach" + i, 20, "male", 5000));
+        }
+        Company large = companyRepository.save(new Company(null, "large", employees.size(), employees));
+
+        //when
+        Statistics statistics = startCountingStatements();
+        mockMvc.perform(delete("/companies/" + small.getId())).andExpect(status().isAccepted());
+        long smallStatements = statistics.getPrepareStatementCount();
+        statistics.clear();
+        mockMvc.perform(delete("/companies/" + large.getId()))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.employeesNumber").value(50));
+        long largeStatements = statistics.getPrepareStatementCount();
+
+        //then
+        assertEquals(smallStatements, largeStatements);
+        assertEquals(0, employeeRepository.count());
+        assertEquals(0, companyRepository.count());
     }
 }
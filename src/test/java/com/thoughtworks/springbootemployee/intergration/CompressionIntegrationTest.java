@@ -0,0 +1,245 @@
+package com.thoughtworks.springbootemployee.intergration;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.thoughtworks.springbootemployee.config.CompressionConfig;
+import com.thoughtworks.springbootemployee.config.CompressionFilter;
+import com.thoughtworks.springbootemployee.model.Employee;
+import com.thoughtworks.springbootemployee.repository.EmployeeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.hasItems;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class CompressionIntegrationTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private EmployeeRepository employeeRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    private void deleteData() {
+        employeeRepository.deleteAll();
+    }
+
+    private void saveEmployees(int count) {
+        List<Employee> employees = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            employees.add(new Employee(null, "employee" + i, 20 + i % 40, i % 2 == 0 ? "male" : "female", 5000 + i));
+        }
+        employeeRepository.saveAll(employees);
+    }
+
+    private static byte[] gunzip(byte[] body) throws IOException {
+        return StreamUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(body)));
+    }
+
+    private double compressedBodyHits() {
+        return meterRegistry.get("cache.gets")
+                .tag("cache", CompressionConfig.COMPRESSED_BODIES)
+                .tag("result", "hit")
+                .functionCounter().count();
+    }
+
+    @Test
+    void should_gzip_body_when_hit_get_all_employees_endpoint_given_accept_encoding_gzip_and_large_list() throws Exception {
+        //given
+        saveEmployees(200);
+        byte[] plain = mockMvc.perform(get("/employees"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        //when
+        MvcResult compressed = mockMvc.perform(get("/employees").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItems(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)))
+                .andReturn();
+
+        //then
+        byte[] body = compressed.getResponse().getContentAsByteArray();
+        assertEquals(body.length, compressed.getResponse().getContentLength());
+        assertTrue(body.length * 5 < plain.length);
+        assertArrayEquals(plain, gunzip(body));
+    }
+
+    @Test
+    void should_not_gzip_body_when_hit_get_employee_endpoint_given_response_below_min_size() throws Exception {
+        //given
+        saveEmployees(1);
+        Integer id = employeeRepository.findAll().get(0).getId();
+
+        //then
+        mockMvc.perform(get("/employees/" + id).header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    void should_reuse_compressed_body_when_hit_get_all_employees_endpoint_given_etag_unchanged() throws Exception {
+        //given
+        saveEmployees(200);
+        MvcResult first = mockMvc.perform(get("/employees").header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn();
+        double hits = compressedBodyHits();
+
+        //when
+        MvcResult second = mockMvc.perform(get("/employees").header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.ETAG, first.getResponse().getHeader(HttpHeaders.ETAG)))
+                .andReturn();
+
+        //then
+        assertEquals(hits + 1, compressedBodyHits());
+        assertArrayEquals(first.getResponse().getContentAsByteArray(), second.getResponse().getContentAsByteArray());
+    }
+
+    @Test
+    void should_give_gzip_body_its_own_etag_and_revalidate_it_when_hit_get_all_employees_endpoint_given_accept_encoding_gzip() throws Exception {
+        //given
+        saveEmployees(200);
+        String plainETag = mockMvc.perform(get("/employees"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        //when
+        String gzipETag = mockMvc.perform(get("/employees").header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        //then
+        assertNotEquals(plainETag, gzipETag);
+        assertEquals(plainETag.replaceFirst("\"$", CompressionFilter.ETAG_SUFFIX + "\""), gzipETag);
+        mockMvc.perform(get("/employees").header(HttpHeaders.ACCEPT_ENCODING, "gzip").header(HttpHeaders.IF_NONE_MATCH, gzipETag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, gzipETag));
+    }
+
+    @Test
+    void should_not_reuse_compressed_body_when_filter_given_same_etag_with_different_body() throws Exception {
+        //given
+        CompressionFilter filter = new CompressionFilter(0, Collections.singletonList(MediaType.APPLICATION_JSON), 6,
+                Caffeine.newBuilder().<String, byte[]>build());
+        byte[] before = "{\"name\":\"zach\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] after = "{\"name\":\"york\"}".getBytes(StandardCharsets.UTF_8);
+        gzipThrough(filter, before);
+
+        //when
+        MockHttpServletResponse response = gzipThrough(filter, after);
+
+        //then
+        assertArrayEquals(after, gunzip(response.getContentAsByteArray()));
+    }
+
+    @Test
+    void should_hand_listener_to_container_and_not_gzip_when_filter_given_non_blocking_writer() throws Exception {
+        //given
+        CompressionFilter filter = new CompressionFilter(0, Collections.singletonList(MediaType.APPLICATION_JSON), 6,
+                Caffeine.newBuilder().<String, byte[]>build());
+        byte[] body = "{\"name\":\"zach\"}".getBytes(StandardCharsets.UTF_8);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/employees/1");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        List<WriteListener> registered = new ArrayList<>();
+        ServletOutputStream containerStream = new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                response.getOutputStream().write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                registered.add(writeListener);
+            }
+        };
+        WriteListener listener = new WriteListener() {
+            @Override
+            public void onWritePossible() {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+        };
+
+        //when
+        filter.doFilter(request, new HttpServletResponseWrapper(response) {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return containerStream;
+            }
+        }, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                ServletOutputStream outputStream = response.getOutputStream();
+                outputStream.write(body, 0, 2);
+                outputStream.setWriteListener(listener);
+                outputStream.write(body, 2, body.length - 2);
+            }
+        }));
+
+        //then
+        assertEquals(Collections.singletonList(listener), registered);
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertArrayEquals(body, response.getContentAsByteArray());
+    }
+
+    // a write landing between the ETag read and the body read leaves a body under an ETag it does not belong to
+    private static MockHttpServletResponse gzipThrough(CompressionFilter filter, byte[] body) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/employees/1");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                response.setHeader(HttpHeaders.ETAG, "\"1\"");
+                response.getOutputStream().write(body);
+            }
+        }));
+        return response;
+    }
+}
@@ -1,26 +1,40 @@
 package com.thoughtworks.springbootemployee.intergration;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.thoughtworks.springbootemployee.config.CacheConfig;
+import com.thoughtworks.springbootemployee.config.GlobalExceptionHandler;
+import com.thoughtworks.springbootemployee.dto.EmployeeResponse;
 import com.thoughtworks.springbootemployee.model.Company;
 import com.thoughtworks.springbootemployee.model.Employee;
 import com.thoughtworks.springbootemployee.repository.CompanyRepository;
 import com.thoughtworks.springbootemployee.repository.EmployeeRepository;
+import com.thoughtworks.springbootemployee.service.EmployeeService;
+import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -32,21 +46,29 @@ public class EmployeeIntegrationTest {
     private EmployeeRepository employeeRepository;
     @Autowired
     private CompanyRepository companyRepository;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private EmployeeService employeeService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
     private final Company testCompany = new Company(1, "OOCL", 6, Collections.emptyList());
+    private Integer companyId;
 
     private final List<Employee> testEmployees = Arrays.asList(
-            new Employee(1, "zach", 21, "male", 5000, 1),
-            new Employee(2, "york", 22, "female", 6000, 1),
-            new Employee(3, "alex", 23, "female", 7000, 1),
-            new Employee(4, "green", 24, "male", 8000, 1),
-            new Employee(5, "karen", 25, "male", 9000, 1),
-            new Employee(6, "chris", 26, "male", 9000, 1)
+            new Employee(null, "zach", 21, "male", 5000, 1),
+            new Employee(null, "york", 22, "female", 6000, 1),
+            new Employee(null, "alex", 23, "female", 7000, 1),
+            new Employee(null, "green", 24, "male", 8000, 1),
+            new Employee(null, "karen", 25, "male", 9000, 1),
+            new Employee(null, "chris", 26, "male", 9000, 1)
     );
 
     @BeforeEach
     private void initData() {
-        companyRepository.save(testCompany);
+        companyId = companyRepository.save(testCompany).getId();
+        testEmployees.forEach(employee -> employee.setCompanyId(companyId));
     }
 
     @AfterEach
@@ -73,6 +95,25 @@ public class EmployeeIntegrationTest {
                 .andExpect(jsonPath("$[0].companyId").value(employee.getCompanyId()));
     }
 
+    @Test
+    void should_stream_employees_as_ndjson_when_hit_get_employee_endpoint_given_accept_ndjson() throws Exception {
+        //given
+        employeeRepository.saveAll(testEmployees);
+
+        //when
+        MvcResult result = mockMvc.perform(get("/employees").accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        //then
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertEquals(testEmployees.size(), lines.length);
+        assertTrue(lines[0].startsWith("{") && lines[0].contains("\"name\":\"zach\""));
+        assertTrue(lines[5].contains("\"name\":\"chris\""));
+    }
+
     @Test
     void should_return_employees_when_hit_get_employee_by_page_endpoint_given_page_and_page_size() throws Exception {
         //given
@@ -88,6 +129,30 @@ public class EmployeeIntegrationTest {
                 .andExpect(jsonPath("$.totalElements").value(6));
     }
 
+    @Test
+    void should_walk_all_employees_when_hit_get_employee_by_cursor_endpoint_given_next_cursors() throws Exception {
+        //given
+        employeeRepository.saveAll(testEmployees);
+        int limit = 4;
+
+        //when
+        MvcResult firstPage = mockMvc.perform(get("/employees?limit=" + limit))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(limit)))
+                .andExpect(jsonPath("$.content[0].name").value("zach"))
+                .andExpect(jsonPath("$.nextCursor").isString())
+                .andExpect(jsonPath("$.totalElements").doesNotExist())
+                .andReturn();
+        String nextCursor = JsonPath.read(firstPage.getResponse().getContentAsString(), "$.nextCursor");
+
+        //then
+        mockMvc.perform(get("/employees?after=" + nextCursor + "&limit=" + limit))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(2)))
+                .andExpect(jsonPath("$.content[0].name").value("karen"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
     @Test
     void should_return_employee_when_hit_get_employee_by_gender_endpoint_given_gender() throws Exception {
         //given
@@ -103,6 +168,129 @@ public class EmployeeIntegrationTest {
                 .andExpect(jsonPath("$[3].gender").value("male"));
     }
 
+    @Test
+    void should_return_matching_employees_when_hit_search_endpoint_given_combined_criteria() throws Exception {
+        //given
+        employeeRepository.saveAll(testEmployees);
+
+        //when
+        mockMvc.perform(get("/employees/search?gender=male&minAge=22&maxSalary=9000&companyId=" + companyId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(3)))
+                .andExpect(jsonPath("$.content[0].name").value("green"))
+                .andExpect(jsonPath("$.content[2].name").value("chris"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void should_return_employees_with_name_prefix_when_hit_search_endpoint_given_name() throws Exception {
+        //given
+        employeeRepository.saveAll(testEmployees);
+
+        //when
+        mockMvc.perform(get("/employees/search?name=ch"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].name").value("chris"));
+    }
+
+    @Test
+    void should_walk_employees_by_salary_when_hit_search_endpoint_given_sort_and_next_cursors() throws Exception {
+        //given
+        employeeRepository.saveAll(testEmployees);
+
+        //when
+        MvcResult firstPage = mockMvc.perform(get("/employees/search?sort=salary&direction=desc&limit=3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].name").value("chris"))
+                .andExpect(jsonPath("$.content[1].name").value("karen"))
+                .andExpect(jsonPath("$.content[2].name").value("green"))
+                .andReturn();
+        String nextCursor = JsonPath.read(firstPage.getResponse().getContentAsString(), "$.nextCursor");
+
+        //then
+        mockMvc.perform(get("/employees/search?sort=salary&direction=desc&limit=3&after=" + nextCursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(3)))
+                .andExpect(jsonPath("$.content[0].name").value("alex"))
+                .andExpect(jsonPath("$.content[2].name").value("zach"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void should_reject_when_hit_search_endpoint_given_unknown_sort_field() throws Exception {
+        //when
+        mockMvc.perform(get("/employees/search?sort=gender"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void should_suggest_added_employee_and_forget_deleted_one_when_hit_suggest_endpoint_given_name_prefix() throws Exception {
+        //given
+        MvcResult created = mockMvc.perform(post("/employees").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\": \"Quentin Tarantino\", \"age\": 20, \"gender\": \"male\", \"salary\": 1000, \"companyId\": " + companyId + "}"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        Integer employeeId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+
+        //when
+        mockMvc.perform(get("/employees/suggest?q=taran"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value(employeeId))
+                .andExpect(jsonPath("$[0].name").value("Quentin Tarantino"));
+
+        //then
+        mockMvc.perform(delete("/employees/" + employeeId)).andExpect(status().isAccepted());
+        mockMvc.perform(get("/employees/suggest?q=taran"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    void should_return_salary_statistics_when_hit_get_employee_statistics_endpoint_given_group_by_gender() throws Exception {
+        //given
+        employeeRepository.saveAll(testEmployees);
+
+        //when
+        mockMvc.perform(get("/employees/statistics?field=salary&groupBy=gender"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "max-age=60"))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].gender").value("female"))
+                .andExpect(jsonPath("$[0].count").value(2))
+                .andExpect(jsonPath("$[0].p50").value(6500.0))
+                .andExpect(jsonPath("$[1].gender").value("male"))
+                .andExpect(jsonPath("$[1].count").value(4))
+                .andExpect(jsonPath("$[1].sum").value(31000))
+                .andExpect(jsonPath("$[1].avg").value(7750.0))
+                .andExpect(jsonPath("$[1].min").value(5000))
+                .andExpect(jsonPath("$[1].max").value(9000))
+                .andExpect(jsonPath("$[1].p50").value(8500.0));
+    }
+
+    @Test
+    void should_return_age_statistics_of_all_employees_when_hit_get_employee_statistics_endpoint_given_no_group() throws Exception {
+        //given
+        employeeRepository.saveAll(testEmployees);
+
+        //when
+        mockMvc.perform(get("/employees/statistics?field=age"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].companyId").doesNotExist())
+                .andExpect(jsonPath("$[0].count").value(6))
+                .andExpect(jsonPath("$[0].min").value(21))
+                .andExpect(jsonPath("$[0].max").value(26));
+    }
+
+    @Test
+    void should_reject_when_hit_get_employee_statistics_endpoint_given_unknown_field() throws Exception {
+        //when
+        mockMvc.perform(get("/employees/statistics?field=name"))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void should_return_employee_when_hit_get_employee_by_id_given_id() throws Exception {
         //given
@@ -120,6 +308,169 @@ public class EmployeeIntegrationTest {
                 .andExpect(jsonPath("$[0].companyId").value(employee.getCompanyId()));
     }
 
+    @Test
+    void should_return_not_found_when_hit_get_employee_by_id_endpoint_given_id_not_exists() throws Exception {
+        //when
+        mockMvc.perform(get("/employees/" + Integer.MAX_VALUE))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void should_return_not_modified_when_hit_get_employee_by_id_endpoint_given_current_etag() throws Exception {
+        //given
+        Employee employee = employeeRepository.save(testEmployees.get(0));
+        String eTag = mockMvc.perform(get("/employees/" + employee.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"0\""))
+                .andReturn().getResponse().getHeader("ETag");
+
+        //when
+        mockMvc.perform(get("/employees/" + employee.getId()).header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void should_return_new_etag_when_hit_get_employee_by_id_endpoint_given_employee_updated_since_etag() throws Exception {
+        //given
+        Employee employee = employeeRepository.save(testEmployees.get(0));
+        employee.setSalary(9999);
+        employeeRepository.save(employee);
+
+        //when
+        mockMvc.perform(get("/employees/" + employee.getId()).header("If-None-Match", "\"0\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""))
+                .andExpect(jsonPath("$.salary").value(9999));
+    }
+
+    @Test
+    void should_serve_current_employee_under_its_own_etag_when_hit_get_employee_by_id_given_stale_body_cached() throws Exception {
+        //given
+        Employee employee = employeeRepository.save(testEmployees.get(0));
+        mockMvc.perform(get("/employees/" + employee.getId())).andExpect(header().string("ETag", "\"0\""));
+        employee.setSalary(9999);
+        employeeRepository.save(employee);
+
+        //when
+        mockMvc.perform(get("/employees/" + employee.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues("ETag", "\"1\""))
+                .andExpect(jsonPath("$.salary").value(9999));
+
+        //then
+        assertEquals(1, cacheManager.getCache(CacheConfig.EMPLOYEES).get(employee.getId(), EmployeeResponse.class).getVersion());
+    }
+
+    @Test
+    void should_return_not_modified_when_hit_get_employees_endpoint_given_unchanged_list() throws Exception {
+        //given
+        List<Employee> employees = employeeRepository.saveAll(testEmployees);
+        String eTag = mockMvc.perform(get("/employees"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        //when
+        mockMvc.perform(get("/employees").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+
+        //then
+        employeeRepository.delete(employees.get(5));
+        mockMvc.perform(get("/employees").header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(5)));
+    }
+
+    @Test
+    void should_reject_update_when_hit_update_employee_endpoint_given_stale_if_match() throws Exception {
+        //given
+        Employee employee = employeeRepository.save(testEmployees.get(0));
+        employee.setSalary(9999);
+        employeeRepository.save(employee);
+        String newEmployee = "{\"id\": " + employee.getId() + ", \"name\": \"hzh\", \"age\": 18, \"gender\": \"male\", \"salary\": 6000}";
+
+        //when
+        mockMvc.perform(put("/employees/" + employee.getId()).header("If-Match", "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON).content(newEmployee))
+                .andExpect(status().isPreconditionFailed());
+
+        //then
+        mockMvc.perform(put("/employees/" + employee.getId()).header("If-Match", "\"1\"")
+                .contentType(MediaType.APPLICATION_JSON).content(newEmployee))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("hzh"));
+    }
+
+    @Test
+    void should_serve_cached_employee_when_hit_get_employee_by_id_endpoint_given_repeated_requests() throws Exception {
+        //given
+        Employee employee = employeeRepository.save(testEmployees.get(0));
+        Cache<Object, Object> cache = ((CaffeineCache) ((TransactionAwareCacheDecorator) cacheManager.getCache(CacheConfig.EMPLOYEES))
+                .getTargetCache()).getNativeCache();
+        long hits = cache.stats().hitCount();
+
+        //when
+        mockMvc.perform(get("/employees/" + employee.getId())).andExpect(status().isOk());
+        mockMvc.perform(get("/employees/" + employee.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("zach"));
+
+        //then
+        assertEquals(hits + 1, cache.stats().hitCount());
+    }
+
+    @Test
+    void should_return_updated_employee_when_hit_get_employee_by_id_endpoint_given_employee_updated_after_cached() throws Exception {
+        //given
+        Employee employee = employeeRepository.save(testEmployees.get(0));
+        mockMvc.perform(get("/employees/" + employee.getId())).andExpect(jsonPath("$.salary").value(5000));
+        String updatedEmployee = "{\"id\": " + employee.getId() + ", \"name\": \"zach\", \"age\": 21, " +
+                "\"gender\": \"male\", \"salary\": 8000, \"companyId\": " + companyId + "}";
+        mockMvc.perform(put("/employees/" + employee.getId()).contentType(MediaType.APPLICATION_JSON).content(updatedEmployee))
+                .andExpect(status().isOk());
+
+        //then
+        mockMvc.perform(get("/employees/" + employee.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.salary").value(8000));
+        mockMvc.perform(delete("/employees/" + employee.getId())).andExpect(status().isAccepted());
+        assertNull(cacheManager.getCache(CacheConfig.EMPLOYEES).get(employee.getId()));
+    }
+
+    @Test
+    void should_keep_cached_employee_until_commit_when_update_employee_given_employee_cached() throws Exception {
+        //given
+        Employee employee = employeeRepository.save(testEmployees.get(0));
+        mockMvc.perform(get("/employees/" + employee.getId())).andExpect(status().isOk());
+        Employee rolledBack = new Employee(employee.getId(), "zach", 21, "male", 7000, companyId);
+        Employee committed = new Employee(employee.getId(), "zach", 21, "male", 8000, companyId);
+
+        //when
+        transactionTemplate.execute(status -> {
+            try {
+                employeeService.updateEmployee(employee.getId(), rolledBack, null);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            status.setRollbackOnly();
+            return null;
+        });
+        EmployeeResponse afterRollback = cacheManager.getCache(CacheConfig.EMPLOYEES).get(employee.getId(), EmployeeResponse.class);
+        EmployeeResponse beforeCommit = transactionTemplate.execute(status -> {
+            try {
+                employeeService.updateEmployee(employee.getId(), committed, null);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return cacheManager.getCache(CacheConfig.EMPLOYEES).get(employee.getId(), EmployeeResponse.class);
+        });
+
+        //then
+        assertEquals(5000, afterRollback.getSalary());
+        assertEquals(5000, beforeCommit.getSalary());
+        assertNull(cacheManager.getCache(CacheConfig.EMPLOYEES).get(employee.getId()));
+    }
+
     @Test
     void should_create_employee_when_hit_add_employee_given_employee() throws Exception {
         //given
@@ -129,7 +480,7 @@ public class EmployeeIntegrationTest {
                 "                \"age\": 22,\n" +
                 "                \"gender\": \"male\",\n" +
                 "                \"salary\": 3000,\n" +
-                "                \"companyId\": 1\n" +
+                "                \"companyId\": " + companyId + "\n" +
                 "            }";
         //when
         mockMvc.perform(post("/employees").contentType(MediaType.APPLICATION_JSON).content(employeeInfo))
@@ -139,20 +490,103 @@ public class EmployeeIntegrationTest {
                 .andExpect(jsonPath("$.age").value(22))
                 .andExpect(jsonPath("$.gender").value("male"))
                 .andExpect(jsonPath("$.salary").value(3000))
-                .andExpect(jsonPath("$.companyId").value(1));
+                .andExpect(jsonPath("$.companyId").value(companyId));
+    }
+
+    @Test
+    void should_create_employees_when_hit_batch_endpoint_given_employee_array() throws Exception {
+        //given
+        String employees = "[{\"name\": \"hzh\", \"age\": 22, \"gender\": \"male\", \"salary\": 3000, \"companyId\": " + companyId + "}," +
+                "{\"name\": \"york\", \"age\": 23, \"gender\": \"female\", \"salary\": 4000, \"companyId\": " + companyId + "}]";
+
+        //when
+        mockMvc.perform(post("/employees/batch").contentType(MediaType.APPLICATION_JSON).content(employees))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0]").isNumber());
+
+        //then
+        assertEquals(2, employeeRepository.count());
+    }
+
+    @Test
+    void should_create_employees_when_hit_batch_endpoint_given_ndjson_stream() throws Exception {
+        //given
+        StringBuilder employees = new StringBuilder();
+        for (int i = 0; i < EmployeeService.BATCH_SIZE + 10; i++) {
+            employees.append("{\"name\": \"employee").append(i).append("\", \"age\": 22, \"gender\": \"male\", \"salary\": 3000}\n");
+        }
+
+        //when
+        mockMvc.perform(post("/employees/batch").contentType("application/x-ndjson").content(employees.toString()))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$", hasSize(EmployeeService.BATCH_SIZE + 10)));
+
+        //then
+        assertEquals(EmployeeService.BATCH_SIZE + 10, employeeRepository.count());
+        assertEquals(1, employeeRepository.findByGender("male").stream()
+                .filter(employee -> employee.getName().equals("employee" + (EmployeeService.BATCH_SIZE + 9))).count());
+    }
+
+    @Test
+    void should_create_nothing_when_hit_batch_endpoint_given_ndjson_stream_with_bad_row_after_first_batch() throws Exception {
+        //given
+        StringBuilder employees = new StringBuilder();
+        for (int i = 0; i < EmployeeService.BATCH_SIZE + 10; i++) {
+            employees.append("{\"name\": \"employee").append(i).append("\", \"age\": 22, \"gender\": \"male\", \"salary\": 3000}\n");
+        }
+        employees.append("{\"age\": 22, \"gender\": \"male\", \"salary\": 3000}\n");
+
+        //when
+        mockMvc.perform(post("/employees/batch").contentType("application/x-ndjson").content(employees.toString()))
+                .andExpect(status().isNotFound());
+
+        //then
+        assertEquals(0, employeeRepository.count());
+    }
+
+    @Test
+    void should_return_bad_request_with_line_when_hit_batch_endpoint_given_ndjson_stream_with_unreadable_row() throws Exception {
+        //given
+        String employees = "{\"name\": \"hzh\", \"age\": 22, \"gender\": \"male\", \"salary\": 3000}\n" +
+                "{\"name\": \"york\", \"age\": 22, \"gender\": \"male\", \"salary\": 3000}\n" +
+                "{\"name\": \"alex\", \"age\": \"old\", \"gender\": \"male\", \"salary\": 3000}\n";
+
+        //when
+        mockMvc.perform(post("/employees/batch").contentType("application/x-ndjson").content(employees))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(GlobalExceptionHandler.MALFORMED_IMPORT + 3));
+
+        //then
+        assertEquals(0, employeeRepository.count());
+    }
+
+    @Test
+    void should_return_bad_request_with_line_when_hit_batch_endpoint_given_ndjson_stream_with_broken_json() throws Exception {
+        //given
+        String employees = "{\"name\": \"hzh\", \"age\": 22, \"gender\": \"male\", \"salary\": 3000}\n" +
+                "{\"name\": \"york\", \"age\": 22,, \"gender\": \"male\"}\n";
+
+        //when
+        mockMvc.perform(post("/employees/batch").contentType("application/x-ndjson").content(employees))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(GlobalExceptionHandler.MALFORMED_IMPORT + 2));
+
+        //then
+        assertEquals(0, employeeRepository.count());
     }
 
     @Test
     void should_update_employee_when_hit_update_employee_given_new_employee() throws Exception {
         //given
-        Employee Employee = employeeRepository.save(new Employee(1, "zach", 22, "female", 500, 1));
+        Employee Employee = employeeRepository.save(new Employee(1, "zach", 22, "female", 500, companyId));
         String newEmployee = "{\n" +
                 "                \"id\": " + Employee.getId() + ",\n" +
                 "                \"name\": \"hzh\",\n" +
                 "                \"age\": 18,\n" +
                 "                \"gender\": \"male\",\n" +
                 "                \"salary\": 6000,\n" +
-                "                \"companyId\": 1\n" +
+                "                \"companyId\": " + companyId + "\n" +
                 "            }";
         //when
         mockMvc.perform(put("/employees/" + Employee.getId()).contentType(MediaType.APPLICATION_JSON).content(newEmployee))
@@ -162,14 +596,73 @@ public class EmployeeIntegrationTest {
                 .andExpect(jsonPath("$.age").value(18))
                 .andExpect(jsonPath("$.gender").value("male"))
                 .andExpect(jsonPath("$.salary").value(6000))
-                .andExpect(jsonPath("$.companyId").value(1));
+                .andExpect(jsonPath("$.companyId").value(companyId));
+    }
+
+    @Test
+    void should_return_not_found_when_hit_add_employee_given_company_not_exists() throws Exception {
+        //when
+        mockMvc.perform(post("/employees").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\": \"hzh\", \"age\": 22, \"gender\": \"male\", \"salary\": 3000, \"companyId\": " + (companyId + 1000) + "}"))
+                .andExpect(status().isNotFound());
+
+        //then
+        assertEquals(0, employeeRepository.count());
+    }
+
+    @Test
+    void should_create_nothing_when_hit_batch_endpoint_given_employee_array_with_company_not_exists() throws Exception {
+        //given
+        String employees = "[{\"name\": \"hzh\", \"age\": 22, \"gender\": \"male\", \"salary\": 3000, \"companyId\": " + companyId + "}," +
+                "{\"name\": \"york\", \"age\": 23, \"gender\": \"female\", \"salary\": 4000, \"companyId\": " + (companyId + 1000) + "}]";
+
+        //when
+        mockMvc.perform(post("/employees/batch").contentType(MediaType.APPLICATION_JSON).content(employees))
+                .andExpect(status().isNotFound());
+
+        //then
+        assertEquals(0, employeeRepository.count());
+    }
+
+    @Test
+    void should_create_nothing_when_hit_batch_endpoint_given_ndjson_stream_with_company_not_exists_after_first_batch() throws Exception {
+        //given
+        StringBuilder employees = new StringBuilder();
+        for (int i = 0; i < EmployeeService.BATCH_SIZE + 10; i++) {
+            employees.append("{\"name\": \"employee").append(i).append("\", \"age\": 22, \"gender\": \"male\", \"salary\": 3000, \"companyId\": ")
+                    .append(companyId).append("}\n");
+        }
+        employees.append("{\"name\": \"york\", \"age\": 22, \"gender\": \"male\", \"salary\": 3000, \"companyId\": ").append(companyId + 1000).append("}\n");
+
+        //when
+        mockMvc.perform(post("/employees/batch").contentType("application/x-ndjson").content(employees.toString()))
+                .andExpect(status().isNotFound());
+
+        //then
+        assertEquals(0, employeeRepository.count());
+        assertEquals(6, companyRepository.findById(companyId).get().getEmployeesNumber());
+    }
+
+    @Test
+    void should_return_not_found_when_hit_update_employee_given_company_not_exists() throws Exception {
+        //given
+        Employee employee = employeeRepository.save(new Employee(1, "zach", 22, "female", 500, companyId));
+
+        //when
+        mockMvc.perform(put("/employees/" + employee.getId()).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"id\": " + employee.getId() + ", \"name\": \"hzh\", \"age\": 18, \"gender\": \"male\", \"salary\": 6000, " +
+                        "\"companyId\": " + (companyId + 1000) + "}"))
+                .andExpect(status().isNotFound());
+
+        //then
+        assertEquals(companyId, employeeRepository.findById(employee.getId()).get().getCompanyId());
     }
 
     @Test
     void should_delete_employee_when_hit_delete_employee_endpoint_given_id() throws Exception {
         //given
         Employee employee = employeeRepository.save(new Employee(
-                1,"zach", 22, "male", 5000, 1));
+                1,"zach", 22, "male", 5000, companyId));
         //when
         mockMvc.perform(delete("/employees/" + employee.getId()))
                 .andExpect(status().isAccepted())
@@ -178,6 +671,91 @@ public class EmployeeIntegrationTest {
                 .andExpect(jsonPath("$.age").value(22))
                 .andExpect(jsonPath("$.gender").value("male"))
                 .andExpect(jsonPath("$.salary").value(5000))
-                .andExpect(jsonPath("$.companyId").value(1));
+                .andExpect(jsonPath("$.companyId").value(companyId));
+    }
+
+    @Test
+    void should_delete_employees_and_recount_company_when_hit_bulk_delete_employees_endpoint_given_ids() throws Exception {
+        //given
+        List<Employee> employees = employeeRepository.saveAll(testEmployees);
+        Integer first = employees.get(0).getId();
+        Integer second = employees.get(1).getId();
+
+        //when
+        mockMvc.perform(delete("/employees?ids=" + first + "," + second))
+                .andExpect(status().isAccepted())
+                .andExpect(content().string("2"));
+
+        //then
+        assertEquals(4, employeeRepository.count());
+        assertEquals(4, companyRepository.findById(companyId).get().getEmployeesNumber());
+        assertFalse(employeeRepository.existsById(first));
+    }
+
+    @Test
+    void should_update_salary_and_reassign_company_when_hit_bulk_update_employees_endpoint_given_ids() throws Exception {
+        //given
+        List<Employee> employees = employeeRepository.saveAll(testEmployees);
+        Integer first = employees.get(0).getId();
+        Integer second = employees.get(1).getId();
+        Integer targetCompanyId = companyRepository.save(new Company(null, "TW", 0, Collections.emptyList())).getId();
+        mockMvc.perform(get("/employees/" + first)).andExpect(jsonPath("$.salary").value(5000));
+
+        //when
+        mockMvc.perform(patch("/employees").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"ids\": [" + first + ", " + second + "], \"salary\": 12000, \"companyId\": " + targetCompanyId + "}"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("2"));
+
+        //then
+        mockMvc.perform(get("/employees/" + first))
+                .andExpect(jsonPath("$.salary").value(12000))
+                .andExpect(jsonPath("$.companyId").value(targetCompanyId));
+        assertEquals(4, companyRepository.findById(companyId).get().getEmployeesNumber());
+        assertEquals(2, companyRepository.findById(targetCompanyId).get().getEmployeesNumber());
+    }
+
+    @Test
+    void should_return_not_found_when_hit_bulk_update_employees_endpoint_given_company_not_exists() throws Exception {
+        //given
+        Integer employeeId = employeeRepository.save(testEmployees.get(0)).getId();
+
+        //then
+        mockMvc.perform(patch("/employees").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"ids\": [" + employeeId + "], \"companyId\": " + (companyId + 1000) + "}"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void should_return_requested_fields_when_hit_get_all_employees_endpoint_given_fields() throws Exception {
+        //given
+        employeeRepository.saveAll(testEmployees);
+
+        //then
+        mockMvc.perform(get("/employees?fields=id,name"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(6)))
+                .andExpect(jsonPath("$[0].id").isNumber())
+                .andExpect(jsonPath("$[0].name").value("zach"))
+                .andExpect(jsonPath("$[0].age").doesNotExist())
+                .andExpect(jsonPath("$[0].companyId").doesNotExist());
+        mockMvc.perform(get("/employees?fields=id,password"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void should_select_only_requested_columns_when_find_responses_given_fields() {
+        //given
+        employeeRepository.saveAll(testEmployees);
+
+        //when
+        List<EmployeeResponse> employees = employeeRepository.findResponses(Arrays.asList("name", "salary"), companyId);
+
+        //then
+        assertEquals(6, employees.size());
+        assertEquals("zach", employees.get(0).getName());
+        assertEquals(5000, employees.get(0).getSalary());
+        assertNull(employees.get(0).getId());
+        assertNull(employees.get(0).getAge());
     }
 }
@@ -0,0 +1,101 @@
+package com.thoughtworks.springbootemployee.intergration;
+
+import com.thoughtworks.springbootemployee.dto.EmployeeSearchCriteria;
+import com.thoughtworks.springbootemployee.repository.CompanyRepository;
+import com.thoughtworks.springbootemployee.repository.EmployeeRepository;
+import com.thoughtworks.springbootemployee.repository.EmployeeSpecifications;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// explains the SQL Hibernate actually generates, so a mapping or query change that stops using an index shows up here
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.thoughtworks.springbootemployee.intergration.EmployeeQueryPlanTest$CapturingStatementInspector")
+public class EmployeeQueryPlanTest {
+    private static final int LIMIT = 11;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EmployeeRepository employeeRepository;
+    @Autowired
+    private CompanyRepository companyRepository;
+
+    @BeforeEach
+    private void clearStatements() {
+        CapturingStatementInspector.STATEMENTS.clear();
+    }
+
+    // the arguments bind the captured statement's parameters in order; Hibernate inlines numeric criteria literals
+    // but binds the LIKE escape character
+    private String explainCaptured(Object... args) {
+        assertEquals(1, CapturingStatementInspector.STATEMENTS.size(), CapturingStatementInspector.STATEMENTS.toString());
+        return jdbcTemplate.queryForObject("EXPLAIN " + CapturingStatementInspector.STATEMENTS.get(0), String.class, args).toUpperCase();
+    }
+
+    @Test
+    void should_use_gender_index_when_explain_find_by_gender_query() {
+        //given
+        employeeRepository.findByGender("male");
+        //when
+        String plan = explainCaptured("male");
+        //then
+        assertThat(plan, containsString("IDX_EMPLOYEE_GENDER"));
+    }
+
+    @Test
+    void should_use_name_index_when_explain_search_by_name_prefix_query() {
+        //given
+        EmployeeSearchCriteria criteria = new EmployeeSearchCriteria();
+        criteria.setName("za");
+        employeeRepository.search(EmployeeSpecifications.matching(criteria), Sort.by("name", "id"), LIMIT);
+        //when
+        String plan = explainCaptured("za%", "\\", LIMIT);
+        //then
+        assertThat(plan, containsString("IDX_EMPLOYEE_NAME"));
+    }
+
+    @Test
+    void should_use_salary_index_when_explain_search_by_salary_range_query() {
+        //given
+        EmployeeSearchCriteria criteria = new EmployeeSearchCriteria();
+        criteria.setMinSalary(5000);
+        criteria.setMaxSalary(6000);
+        employeeRepository.search(EmployeeSpecifications.matching(criteria), Sort.by("salary", "id"), LIMIT);
+        //when
+        String plan = explainCaptured(LIMIT);
+        //then
+        assertThat(plan, containsString("IDX_EMPLOYEE_SALARY"));
+    }
+
+    @Test
+    void should_use_company_id_index_when_explain_company_with_employees_join() {
+        //given
+        companyRepository.findWithEmployeesById(1);
+        //when
+        String plan = explainCaptured(1);
+        //then
+        assertThat(plan, containsString("IDX_EMPLOYEE_COMPANY_ID"));
+    }
+
+    public static class CapturingStatementInspector implements StatementInspector {
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.thoughtworks.springbootemployee.intergration;
+
+import com.jayway.jsonpath.JsonPath;
+import com.thoughtworks.springbootemployee.dto.EmployeeWriteStatus;
+import com.thoughtworks.springbootemployee.repository.EmployeeRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = {
+        "employee.write-behind.enabled=true",
+        "employee.write-behind.flush-interval-ms=10",
+        // a journal per run, so one left behind by an earlier run is never replayed into this one
+        "employee.write-behind.journal=${java.io.tmpdir}/employee-writes-${random.uuid}.journal"
+})
+@AutoConfigureMockMvc
+public class EmployeeWriteBehindIntegrationTest {
+
+    private static final int MAX_POLLS = 200;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @AfterEach
+    private void deleteDate() {
+        employeeRepository.deleteAll();
+    }
+
+    @Test
+    void should_accept_and_later_write_employee_when_hit_post_employee_endpoint_given_write_behind_enabled() throws Exception {
+        //given
+        String employeeAsJson = "{\n" +
+                "    \"name\": \"zach\",\n" +
+                "    \"age\": 21,\n" +
+                "    \"gender\": \"male\",\n" +
+                "    \"salary\": 5000\n" +
+                "}";
+
+        //when
+        MvcResult accepted = mockMvc.perform(post("/employees")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(employeeAsJson))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.state").value(EmployeeWriteStatus.ACCEPTED))
+                .andReturn();
+        String location = accepted.getResponse().getHeader("Location");
+        String state = EmployeeWriteStatus.ACCEPTED;
+        String status = null;
+        for (int poll = 0; poll < MAX_POLLS && EmployeeWriteStatus.ACCEPTED.equals(state); poll++) {
+            Thread.sleep(10);
+            status = mockMvc.perform(get(location))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            state = JsonPath.read(status, "$.state");
+        }
+
+        //then
+        assertEquals(EmployeeWriteStatus.WRITTEN, state);
+        Integer employeeId = JsonPath.read(status, "$.employeeId");
+        assertEquals("zach", employeeRepository.findById(employeeId).get().getName());
+    }
+
+    @Test
+    void should_return_not_found_when_hit_write_status_endpoint_given_unknown_tracking_id() throws Exception {
+        //when
+        //then
+        mockMvc.perform(get("/employees/writes/unknown"))
+                .andExpect(status().isNotFound());
+    }
+}
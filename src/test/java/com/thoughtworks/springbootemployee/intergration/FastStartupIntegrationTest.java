@@ -0,0 +1,96 @@
+package com.thoughtworks.springbootemployee.intergration;
+
+import com.thoughtworks.springbootemployee.SpringBootEmployeeApplication;
+import com.thoughtworks.springbootemployee.config.StartupConfig;
+import com.thoughtworks.springbootemployee.config.StartupTimeline;
+import com.thoughtworks.springbootemployee.dto.EmployeeResponse;
+import com.thoughtworks.springbootemployee.model.Employee;
+import com.thoughtworks.springbootemployee.service.EmployeeService;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FastStartupIntegrationTest {
+    private static final int WARM_BOOTS = 3;
+    // the profile has to save a clear share of the work, not just win by noise
+    private static final double MAX_FAST_SHARE = 0.8;
+
+    // passed as arguments because builder properties are only defaults, which application.yml overrides
+    private static ConfigurableApplicationContext boot(String url, String... profiles) {
+        return new SpringApplicationBuilder(SpringBootEmployeeApplication.class)
+                .profiles(profiles)
+                .run("--server.port=0",
+                        "--spring.datasource.url=" + url,
+                        "--spring.main.banner-mode=off",
+                        "--startup.timeline.enabled=true");
+    }
+
+    private static String freshDatabase() {
+        return "jdbc:h2:mem:boot-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+    }
+
+    // bean self times add up to the work done creating the context; Flyway migrates inside its bean, so that is counted
+    // too, while the JVM, class loading of the test and Tomcat time a wall clock adds are not
+    private static long startupWorkNanos(String url, String... profiles) {
+        try (ConfigurableApplicationContext context = boot(url, profiles)) {
+            return context.getBean(StartupTimeline.class).getSteps(StartupTimeline.BEAN).stream()
+                    .mapToLong(StartupTimeline.Step::getSelfNanos)
+                    .sum();
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    // every boot after the first reuses the migrated database and warm classes, as a restarted pod does; the profiles
+    // take turns so a slow stretch of the machine lands on both
+    @Test
+    void should_spend_less_startup_time_when_restart_given_fast_startup_profile() {
+        //given
+        String url = freshDatabase();
+        startupWorkNanos(url);
+        startupWorkNanos(url, StartupConfig.FAST_STARTUP);
+        long[] defaultNanos = new long[WARM_BOOTS];
+        long[] fastNanos = new long[WARM_BOOTS];
+
+        //when
+        for (int i = 0; i < WARM_BOOTS; i++) {
+            defaultNanos[i] = startupWorkNanos(url);
+            fastNanos[i] = startupWorkNanos(url, StartupConfig.FAST_STARTUP);
+        }
+
+        //then
+        long defaultMedian = median(defaultNanos);
+        long fastMedian = median(fastNanos);
+        assertTrue(fastMedian < defaultMedian * MAX_FAST_SHARE, String.format("fast-startup took %.1f ms, default %.1f ms",
+                fastMedian / 1e6, defaultMedian / 1e6));
+    }
+
+    @Test
+    void should_skip_migrations_and_still_serve_employees_when_restart_given_fast_startup_profile_and_unchanged_scripts() throws Exception {
+        //given
+        String url = freshDatabase();
+        try (ConfigurableApplicationContext first = boot(url, StartupConfig.FAST_STARTUP)) {
+            assertEquals(8, first.getBean(StartupTimeline.class).getSteps(StartupTimeline.MIGRATION).size());
+        }
+
+        //when
+        try (ConfigurableApplicationContext second = boot(url, StartupConfig.FAST_STARTUP)) {
+            EmployeeService employeeService = second.getBean(EmployeeService.class);
+            EmployeeResponse added = employeeService.addEmployee(new Employee(null, "zach", 20, "male", 5000));
+
+            //then
+            assertEquals(0, second.getBean(StartupTimeline.class).getSteps(StartupTimeline.MIGRATION).size());
+            assertEquals("zach", employeeService.getEmployeeById(added.getId()).getName());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.thoughtworks.springbootemployee.intergration;
+
+import com.thoughtworks.springbootemployee.config.SqlRequestMetricsFilter;
+import com.thoughtworks.springbootemployee.model.Employee;
+import com.thoughtworks.springbootemployee.repository.EmployeeRepository;
+import org.junit.jupiter.api.AfterEach;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class MetricsIntegrationTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private EmployeeRepository employeeRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    private void deleteData() {
+        employeeRepository.deleteAll();
+    }
+
+    @Test
+    void should_expose_endpoint_service_and_sql_metrics_when_hit_prometheus_endpoint_given_employee_requests() throws Exception {
+        //given
+        Employee employee = employeeRepository.save(new Employee(null, "zach", 21, "male", 5000));
+        mockMvc.perform(get("/employees")).andExpect(status().isOk());
+        mockMvc.perform(get("/employees/" + employee.getId())).andExpect(status().isOk());
+
+        //then
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket{exception=\"None\",method=\"GET\",outcome=\"SUCCESS\",status=\"200\",uri=\"/employees\"")))
+                .andExpect(content().string(containsString("http_server_requests_seconds_count{exception=\"None\",method=\"GET\",outcome=\"SUCCESS\",status=\"200\",uri=\"/employees/{employeeId}\",}")))
+                .andExpect(content().string(containsString("service_method_seconds_bucket{class=\"EmployeeService\",method=\"getAll\"")))
+                .andExpect(content().string(containsString("sql_statements_seconds_bucket")))
+                .andExpect(content().string(containsString("sql_request_statements_count{uri=\"/employees/{employeeId}\",}")))
+                .andExpect(content().string(containsString("cache_gets_total{cache=\"employees\"")))
+                .andExpect(content().string(containsString("hikaricp_connections_active{pool=\"employee-pool\"")))
+                .andExpect(content().string(containsString("hikaricp_connections_idle{pool=\"employee-pool\"")))
+                .andExpect(content().string(containsString("hikaricp_connections_pending{pool=\"employee-pool\"")))
+                .andExpect(content().string(containsString("hikaricp_connections_acquire_seconds_bucket{pool=\"employee-pool\"")));
+    }
+
+    @Test
+    void should_sum_statements_of_every_transaction_when_hit_get_employee_endpoint_given_version_and_body_read_separately() throws Exception {
+        //given
+        Employee employee = employeeRepository.save(new Employee(null, "zach", 21, "male", 5000));
+        String uri = "/employees/{employeeId}";
+        long requestsBefore = statementsPerRequest(uri) == null ? 0 : statementsPerRequest(uri).count();
+        double statementsBefore = statementsPerRequest(uri) == null ? 0 : statementsPerRequest(uri).totalAmount();
+
+        //when
+        mockMvc.perform(get("/employees/" + employee.getId())).andExpect(status().isOk());
+
+        //then
+        assertEquals(1, statementsPerRequest(uri).count() - requestsBefore);
+        assertEquals(2, statementsPerRequest(uri).totalAmount() - statementsBefore);
+    }
+
+    private DistributionSummary statementsPerRequest(String uri) {
+        return meterRegistry.find(SqlRequestMetricsFilter.STATEMENTS).tag("uri", uri).summary();
+    }
+}
@@ -0,0 +1,142 @@
+package com.thoughtworks.springbootemployee.intergration;
+
+import com.thoughtworks.springbootemployee.model.Employee;
+import com.thoughtworks.springbootemployee.repository.EmployeeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+
+import javax.sql.DataSource;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.sql.Connection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Tomcat gets 4 request threads and every request holds a pooled connection for 100ms of simulated JDBC latency:
+// thread-per-request could hold at most 4 connections at once, while offloading is bounded by the 20 connections
+// instead, with the rest of the 2000 concurrent requests parked in flight off the Tomcat threads
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "rest.execution-mode=offload",
+        "rest.jdbc-executor.threads=20",
+        "spring.datasource.hikari.maximum-pool-size=20",
+        "rest.jdbc-executor.queue-capacity=5000",
+        "rest.jdbc-executor.timeout-ms=120000",
+        "server.tomcat.threads.max=4",
+        "server.tomcat.threads.min-spare=4",
+        "server.tomcat.accept-count=2000"
+})
+@Import(OffloadExecutionLoadTest.JdbcLatencyAspect.class)
+public class OffloadExecutionLoadTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OffloadExecutionLoadTest.class);
+    private static final int CONCURRENT_REQUESTS = 2000;
+    private static final int TOMCAT_THREADS = 4;
+    private static final int POOL_SIZE = 20;
+    private static final long JDBC_LATENCY_MILLIS = 100;
+    private static final AtomicInteger holdingConnections = new AtomicInteger();
+    private static final AtomicInteger peakHoldingConnections = new AtomicInteger();
+
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private EmployeeRepository employeeRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    private void deleteDate() {
+        employeeRepository.deleteAll();
+    }
+
+    @Test
+    void should_keep_thousands_of_requests_in_flight_when_hit_get_employee_endpoint_given_offload_mode_and_few_tomcat_threads() throws Exception {
+        //given
+        Integer employeeId = employeeRepository.save(new Employee(null, "zach", 21, "male", 5000)).getId();
+        URL url = new URL("http://localhost:" + port + "/employees/" + employeeId);
+        ExecutorService clients = Executors.newFixedThreadPool(CONCURRENT_REQUESTS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger peakInFlight = new AtomicInteger();
+
+        //when
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            clients.execute(() -> {
+                try {
+                    start.await();
+                    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                    try (InputStream body = connection.getInputStream()) {
+                        while (body.read() != -1) {
+                            // drain so the connection can be reused
+                        }
+                    }
+                    if (connection.getResponseCode() == 200) {
+                        succeeded.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    // counted as a failure by the assertion below
+                }
+            });
+        }
+        long startedAt = System.nanoTime();
+        start.countDown();
+        clients.shutdown();
+        while (!clients.awaitTermination(1, TimeUnit.MILLISECONDS)) {
+            peakInFlight.accumulateAndGet(inFlight(), Math::max);
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+
+        //then
+        LOGGER.info("{} requests in {} ms, peak in flight {}, peak connections held {}, thread-per-request floor {} ms",
+                CONCURRENT_REQUESTS, elapsedMillis, peakInFlight.get(), peakHoldingConnections.get(),
+                CONCURRENT_REQUESTS * JDBC_LATENCY_MILLIS / TOMCAT_THREADS);
+        assertEquals(CONCURRENT_REQUESTS, succeeded.get());
+        assertTrue(peakInFlight.get() > CONCURRENT_REQUESTS / 10);
+        assertTrue(peakHoldingConnections.get() > TOMCAT_THREADS);
+        assertTrue(peakHoldingConnections.get() <= POOL_SIZE);
+    }
+
+    // holds a pooled connection for the simulated latency, as a slow query would, so the pool bound is exercised
+    @Aspect
+    static class JdbcLatencyAspect {
+        private final DataSource dataSource;
+
+        JdbcLatencyAspect(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        @Around("execution(* com.thoughtworks.springbootemployee.service.EmployeeService.getEmployeeVersion(..))")
+        public Object delay(ProceedingJoinPoint joinPoint) throws Throwable {
+            Connection connection = dataSource.getConnection();
+            peakHoldingConnections.accumulateAndGet(holdingConnections.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(JDBC_LATENCY_MILLIS);
+            } finally {
+                holdingConnections.decrementAndGet();
+                connection.close();
+            }
+            return joinPoint.proceed();
+        }
+    }
+
+    private int inFlight() {
+        return (int) meterRegistry.get("http.server.requests.offloaded").gauge().value();
+    }
+}
@@ -0,0 +1,127 @@
+package com.thoughtworks.springbootemployee.intergration;
+
+import com.thoughtworks.springbootemployee.model.Employee;
+import com.thoughtworks.springbootemployee.repository.EmployeeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// one JDBC thread held until the test lets go and a 200ms async timeout: the first request times out while running,
+// the rest time out while still queued, so their tasks are cancelled before they ever start
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "rest.execution-mode=offload",
+        "rest.jdbc-executor.threads=1",
+        "rest.jdbc-executor.queue-capacity=20",
+        "rest.jdbc-executor.timeout-ms=200"
+})
+@Import(OffloadTimeoutIntegrationTest.JdbcLatencyAspect.class)
+public class OffloadTimeoutIntegrationTest {
+
+    private static final int CONCURRENT_REQUESTS = 10;
+    private static volatile boolean slow;
+
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private EmployeeRepository employeeRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    private void deleteDate() {
+        slow = false;
+        employeeRepository.deleteAll();
+    }
+
+    @Test
+    void should_release_admission_when_requests_time_out_given_offload_mode_and_queued_requests() throws Exception {
+        //given
+        Integer employeeId = employeeRepository.save(new Employee(null, "zach", 21, "male", 5000)).getId();
+        URL url = new URL("http://localhost:" + port + "/employees/" + employeeId);
+        ExecutorService clients = Executors.newFixedThreadPool(CONCURRENT_REQUESTS);
+        List<Future<Integer>> statuses = new ArrayList<>();
+        slow = true;
+
+        //when
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            statuses.add(clients.submit(status(url)));
+        }
+        clients.shutdown();
+        for (Future<Integer> status : statuses) {
+            assertEquals(503, status.get().intValue());
+        }
+        slow = false;
+
+        //then
+        assertEquals(0, awaitInFlight());
+        assertEquals(200, status(url).call().intValue());
+        assertEquals(0, awaitInFlight());
+    }
+
+    private static Callable<Integer> status(URL url) {
+        return () -> {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            try {
+                return connection.getResponseCode();
+            } finally {
+                connection.disconnect();
+            }
+        };
+    }
+
+    @Aspect
+    static class JdbcLatencyAspect {
+        @Around("execution(* com.thoughtworks.springbootemployee.service.EmployeeService.getEmployeeVersion(..))")
+        public Object delay(ProceedingJoinPoint joinPoint) throws Throwable {
+            // Tomcat only checks async timeouts about once a second, so a fixed delay could still finish first; the
+            // wait ignores the interrupt the timeout sends, as a blocking driver read does, since a task failing first
+            // would race the timeout's 503 with a 500
+            boolean interrupted = false;
+            while (slow) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(10);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return joinPoint.proceed();
+        }
+    }
+
+    // the permit comes back when the container completes the async request, just after the response is sent
+    private int awaitInFlight() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        int inFlight = inFlight();
+        while (inFlight > 0 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+            inFlight = inFlight();
+        }
+        return inFlight;
+    }
+
+    private int inFlight() {
+        return (int) meterRegistry.get("http.server.requests.offloaded").gauge().value();
+    }
+}
@@ -0,0 +1,104 @@
+package com.thoughtworks.springbootemployee.intergration;
+
+import com.thoughtworks.springbootemployee.config.ReadYourWrites;
+import com.thoughtworks.springbootemployee.repository.EmployeeRepository;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.servlet.http.Cookie;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// two in-memory H2 databases stand in for the primary and a replica that never catches up
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primarydb",
+        "datasource.replica.url=" + ReplicaRoutingIntegrationTest.REPLICA_URL,
+        "datasource.replica.sticky-ms=" + ReplicaRoutingIntegrationTest.STICKY_MILLIS
+})
+@AutoConfigureMockMvc
+public class ReplicaRoutingIntegrationTest {
+    static final String REPLICA_URL = "jdbc:h2:mem:replicadb;DB_CLOSE_DELAY=-1";
+    static final long STICKY_MILLIS = 300;
+
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @BeforeAll
+    static void migrateReplica() {
+        Flyway.configure().dataSource(REPLICA_URL, "sa", "").load().migrate();
+    }
+
+    @AfterEach
+    private void deleteData() {
+        replica.update("delete from employee");
+        employeeRepository.deleteAll();
+    }
+
+    @Test
+    void should_read_from_replica_when_hit_get_employees_endpoint_given_no_recent_write() throws Exception {
+        //given
+        replica.update("insert into employee(id, name, age, gender, salary) values (1000, 'replicated', 30, 'male', 5000)");
+        Thread.sleep(STICKY_MILLIS);
+
+        //when
+        //then
+        mockMvc.perform(get("/employees"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name").value("replicated"));
+    }
+
+    @Test
+    void should_read_own_write_from_primary_when_hit_get_employees_endpoint_given_write_within_sticky_window() throws Exception {
+        //given
+        String employeeAsJson = "{\"name\": \"zach\", \"age\": 21, \"gender\": \"male\", \"salary\": 5000}";
+        Cookie lastWrite = mockMvc.perform(post("/employees").contentType(MediaType.APPLICATION_JSON).content(employeeAsJson))
+                .andExpect(status().isCreated())
+                .andExpect(cookie().exists(ReadYourWrites.COOKIE))
+                .andReturn().getResponse().getCookie(ReadYourWrites.COOKIE);
+
+        //when
+        //then
+        mockMvc.perform(get("/employees").cookie(lastWrite))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", hasItem("zach")));
+        Thread.sleep(STICKY_MILLIS);
+        mockMvc.perform(get("/employees").cookie(lastWrite))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", not(hasItem("zach"))));
+    }
+
+    @Test
+    void should_read_from_replica_when_hit_get_employees_endpoint_given_another_client_wrote_within_sticky_window() throws Exception {
+        //given
+        String employeeAsJson = "{\"name\": \"zach\", \"age\": 21, \"gender\": \"male\", \"salary\": 5000}";
+        mockMvc.perform(post("/employees").contentType(MediaType.APPLICATION_JSON).content(employeeAsJson))
+                .andExpect(status().isCreated());
+
+        //when
+        //then
+        mockMvc.perform(get("/employees"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", not(hasItem("zach"))));
+    }
+}
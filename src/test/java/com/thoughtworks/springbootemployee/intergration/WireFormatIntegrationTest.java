@@ -0,0 +1,171 @@
+package com.thoughtworks.springbootemployee.intergration;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.thoughtworks.springbootemployee.config.WireFormatConfig;
+import com.thoughtworks.springbootemployee.dto.CompanyRequest;
+import com.thoughtworks.springbootemployee.dto.CompanyResponse;
+import com.thoughtworks.springbootemployee.dto.EmployeeRequest;
+import com.thoughtworks.springbootemployee.dto.EmployeeResponse;
+import com.thoughtworks.springbootemployee.model.Company;
+import com.thoughtworks.springbootemployee.model.Employee;
+import com.thoughtworks.springbootemployee.repository.CompanyRepository;
+import com.thoughtworks.springbootemployee.repository.EmployeeRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class WireFormatIntegrationTest {
+    private static final MediaType APPLICATION_SMILE = MediaType.parseMediaType(WireFormatConfig.APPLICATION_SMILE_VALUE);
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private EmployeeRepository employeeRepository;
+    @Autowired
+    private CompanyRepository companyRepository;
+
+    private final ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+    private final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+
+    @AfterEach
+    private void deleteData() {
+        companyRepository.deleteAll();
+        employeeRepository.deleteAll();
+    }
+
+    @Test
+    void should_round_trip_employee_when_hit_add_employee_endpoint_given_cbor_request_and_accept() throws Exception {
+        //given
+        EmployeeRequest employeeRequest = new EmployeeRequest(null, "zach", 18, "male", 1000, null);
+
+        //when
+        byte[] body = mockMvc.perform(post("/employees")
+                .contentType(MediaType.APPLICATION_CBOR)
+                .accept(MediaType.APPLICATION_CBOR)
+                .content(cborMapper.writeValueAsBytes(employeeRequest)))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        //then
+        EmployeeResponse employeeResponse = cborMapper.readValue(body, EmployeeResponse.class);
+        assertEquals("zach", employeeResponse.getName());
+        assertEquals(18, employeeResponse.getAge());
+        assertEquals(1000, employeeResponse.getSalary());
+        assertTrue(employeeRepository.existsById(employeeResponse.getId()));
+    }
+
+    @Test
+    void should_round_trip_company_when_hit_add_company_endpoint_given_smile_request_and_accept() throws Exception {
+        //given
+        CompanyRequest companyRequest = new CompanyRequest(null, "OOCL", 2, Arrays.asList(
+                new Employee(null, "zach", 20, "male", 5000),
+                new Employee(null, "york", 22, "female", 6000)));
+
+        //when
+        byte[] body = mockMvc.perform(post("/companies")
+                .contentType(APPLICATION_SMILE)
+                .accept(APPLICATION_SMILE)
+                .content(smileMapper.writeValueAsBytes(companyRequest)))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(APPLICATION_SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        //then
+        CompanyResponse companyResponse = smileMapper.readValue(body, CompanyResponse.class);
+        assertEquals("OOCL", companyResponse.getCompanyName());
+        assertEquals(2, companyResponse.getEmployeesNumber());
+        assertEquals("york", companyResponse.getEmployees().get(1).getName());
+    }
+
+    @Test
+    void should_return_smaller_body_when_hit_get_company_endpoint_given_smile_accept() throws Exception {
+        //given
+        Integer companyId = companyRepository.save(new Company(null, "OOCL", 2, Arrays.asList(
+                new Employee(null, "zach", 20, "male", 5000),
+                new Employee(null, "york", 22, "female", 6000)))).getId();
+
+        //when
+        byte[] body = mockMvc.perform(get("/companies/" + companyId).accept(APPLICATION_SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+        byte[] json = mockMvc.perform(get("/companies/" + companyId))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        //then
+        CompanyResponse companyResponse = smileMapper.readValue(body, CompanyResponse.class);
+        assertEquals(companyId, companyResponse.getId());
+        assertEquals(2, companyResponse.getEmployees().size());
+        assertTrue(body.length < json.length);
+    }
+
+    @Test
+    void should_add_employees_when_hit_batch_endpoint_given_cbor_list() throws Exception {
+        //given
+        List<EmployeeRequest> employeeRequests = Arrays.asList(
+                new EmployeeRequest(null, "zach", 18, "male", 1000, null),
+                new EmployeeRequest(null, "york", 19, "female", 2000, null));
+
+        //when
+        byte[] body = mockMvc.perform(post("/employees/batch")
+                .contentType(MediaType.APPLICATION_CBOR)
+                .accept(MediaType.APPLICATION_CBOR)
+                .content(cborMapper.writeValueAsBytes(employeeRequests)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsByteArray();
+
+        //then
+        List<Integer> ids = cborMapper.readValue(body, new TypeReference<List<Integer>>() {
+        });
+        assertEquals(2, ids.size());
+        assertEquals(2, employeeRepository.count());
+    }
+
+    @Test
+    void should_give_each_format_its_own_etag_when_hit_get_employee_endpoint_given_cbor_accept() throws Exception {
+        //given
+        Integer employeeId = employeeRepository.save(new Employee(null, "zach", 20, "male", 5000)).getId();
+        String jsonETag = mockMvc.perform(get("/employees/" + employeeId))
+                .andExpect(header().string("ETag", "\"0\""))
+                .andReturn().getResponse().getHeader("ETag");
+
+        //when
+        String cborETag = mockMvc.perform(get("/employees/" + employeeId).accept(MediaType.APPLICATION_CBOR).header("If-None-Match", jsonETag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"0-cbor\""))
+                .andExpect(header().string("Vary", "Accept"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        //then
+        mockMvc.perform(get("/employees/" + employeeId).accept(MediaType.APPLICATION_CBOR).header("If-None-Match", cborETag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("Vary", "Accept"));
+        mockMvc.perform(put("/employees/" + employeeId).header("If-Match", cborETag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"id\": " + employeeId + ", \"name\": \"zach\", \"age\": 21, \"gender\": \"male\", \"salary\": 5000}"))
+                .andExpect(status().isOk());
+    }
+}
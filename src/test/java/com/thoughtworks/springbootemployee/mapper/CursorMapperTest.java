@@ -0,0 +1,53 @@
+package com.thoughtworks.springbootemployee.mapper;
+
+import com.thoughtworks.springbootemployee.Mapper.CursorMapper;
+import com.thoughtworks.springbootemployee.exception.IllegalOperationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CursorMapperTest {
+    @Test
+    void should_return_id_when_decode_given_encoded_cursor() throws IllegalOperationException {
+        //given
+        String cursor = CursorMapper.encode(42);
+        //when
+        int id = CursorMapper.decode(cursor);
+        //then
+        assertEquals(42, id);
+    }
+
+    @Test
+    void should_start_from_beginning_when_decode_given_no_cursor() throws IllegalOperationException {
+        assertEquals(0, CursorMapper.decode(null));
+    }
+
+    @Test
+    void should_throw_illegal_operation_exception_when_decode_given_tampered_cursor() {
+        assertThrows(IllegalOperationException.class, () -> CursorMapper.decode("not-a-cursor"));
+    }
+
+    @Test
+    void should_return_id_and_sort_value_when_decode_key_given_encoded_key_cursor() throws IllegalOperationException {
+        //given
+        String cursor = CursorMapper.encode(42, "van:der");
+        //when
+        Map.Entry<Integer, String> key = CursorMapper.decodeKey(cursor);
+        //then
+        assertEquals(42, key.getKey());
+        assertEquals("van:der", key.getValue());
+    }
+
+    @Test
+    void should_throw_illegal_operation_exception_when_decode_key_given_id_cursor() {
+        assertThrows(IllegalOperationException.class, () -> CursorMapper.decodeKey(CursorMapper.encode(42)));
+    }
+
+    @Test
+    void should_cap_limit_when_check_limit_given_too_large_limit() throws IllegalOperationException {
+        assertEquals(CursorMapper.MAX_LIMIT, CursorMapper.checkLimit(CursorMapper.MAX_LIMIT + 1));
+    }
+}
@@ -20,6 +20,7 @@ public class EmployeeMapperTest {
         assertEquals(employee.getAge(), employeeRequest.getAge());
         assertEquals(employee.getName(), employeeRequest.getName());
         assertEquals(employee.getGender(), employeeRequest.getGender());
+        assertEquals(employee.getSalary(), employeeRequest.getSalary());
         assertEquals(employee.getCompanyId(), employeeRequest.getCompanyId());
     }
 
@@ -34,6 +35,7 @@ public class EmployeeMapperTest {
         assertEquals(employee.getAge(), employeeResponse.getAge());
         assertEquals(employee.getName(), employeeResponse.getName());
         assertEquals(employee.getGender(), employeeResponse.getGender());
+        assertEquals(employee.getSalary(), employeeResponse.getSalary());
         assertEquals(employee.getCompanyId(), employeeResponse.getCompanyId());
     }
 }
@@ -1,47 +1,55 @@
 package com.thoughtworks.springbootemployee.service;
 
+import com.thoughtworks.springbootemployee.Mapper.CursorMapper;
 import com.thoughtworks.springbootemployee.dto.CompanyResponse;
+import com.thoughtworks.springbootemployee.dto.CursorPage;
 import com.thoughtworks.springbootemployee.dto.EmployeeResponse;
 import com.thoughtworks.springbootemployee.exception.IllegalOperationException;
 import com.thoughtworks.springbootemployee.exception.NoSuchDataException;
 import com.thoughtworks.springbootemployee.model.Company;
 import com.thoughtworks.springbootemployee.model.Employee;
 import com.thoughtworks.springbootemployee.repository.CompanyRepository;
+import com.thoughtworks.springbootemployee.repository.EmployeeRepository;
 import org.junit.jupiter.api.Test;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 public class CompanyServiceTest {
 
     private final CompanyRepository companyRepository = mock(CompanyRepository.class);
-    private final CompanyService companyService = new CompanyService(companyRepository);
+    private final EmployeeRepository employeeRepository = mock(EmployeeRepository.class);
+    private final CompanyService companyService = new CompanyService(companyRepository, employeeRepository, mock(EmployeeNameIndex.class));
 
     @Test
     void should_return_companies_when_getAll_given_none() {
         //given
-        given(companyRepository.findAll()).willReturn(Arrays.asList(
-                new Company(1, "alibaba", 200, new ArrayList<>(Arrays.asList(
-                        new Employee(4, "alibaba1", 20, "male", 6000),
-                        new Employee(11, "tengxun2", 19, "female", 7000),
-                        new Employee(6, "alibaba3", 19, "male", 8000),
-                        new Employee(13, "huawei", 60, "male", 4000),
-                        new Employee(1, "Quentin", 18, "male", 10000),
-                        new Employee(5, "goodboy", 70, "female", 5000)
-                ))),
-                new Company(2, "tx", 100, new ArrayList<>(Arrays.asList(
-                        new Employee(4, "tx", 20, "male", 6000),
-                        new Employee(5, "gd", 70, "remale", 5000)
-                )))
+        given(companyRepository.findAllResponses()).willReturn(Arrays.asList(
+                new CompanyResponse(1, "alibaba", 200),
+                new CompanyResponse(2, "tx", 100)
+        ));
+        given(employeeRepository.findAllAssignedToCompany()).willReturn(Arrays.asList(
+                new Employee(4, "alibaba1", 20, "male", 6000, 1),
+                new Employee(11, "tengxun2", 19, "female", 7000, 1),
+                new Employee(6, "alibaba3", 19, "male", 8000, 1),
+                new Employee(13, "huawei", 60, "male", 4000, 1),
+                new Employee(1, "Quentin", 18, "male", 10000, 1),
+                new Employee(5, "goodboy", 70, "female", 5000, 1),
+                new Employee(14, "tx", 20, "male", 6000, 2),
+                new Employee(15, "gd", 70, "remale", 5000, 2)
         ));
 
         //when
@@ -49,13 +57,31 @@ public class CompanyServiceTest {
         //then
         assertNotNull(companies);
         assertEquals(2, companies.size());
+        assertEquals(6, companies.get(0).getEmployees().size());
+        assertEquals(2, companies.get(1).getEmployees().size());
+    }
+
+    @Test
+    void should_not_query_employees_when_getAll_without_employees_given_none() {
+        //given
+        given(companyRepository.findAllResponses()).willReturn(Arrays.asList(
+                new CompanyResponse(1, "alibaba", 200),
+                new CompanyResponse(2, "tx", 100)
+        ));
+
+        //when
+        List<CompanyResponse> companies = companyService.getAllWithoutEmployees();
+        //then
+        assertEquals(2, companies.size());
+        assertNull(companies.get(0).getEmployees());
+        verify(employeeRepository, never()).findAllAssignedToCompany();
     }
 
     @Test
     void should_return_company_when_getCompany_by_id_given_id_is_1() {
         //given
         Integer id = 1;
-        given(companyRepository.findById(id)).willReturn(
+        given(companyRepository.findWithEmployeesById(id)).willReturn(
                 Optional.of(
                         new Company(1, "alibaba", 200, new ArrayList<>(Arrays.asList(
                         new Employee(4, "alibaba1", 20, "male", 6000),
@@ -87,6 +113,22 @@ public class CompanyServiceTest {
         assertNotNull(companies);
     }
 
+    @Test
+    void should_return_companies_and_next_cursor_when_getCompanies_after_cursor_given_more_rows_than_limit() throws IllegalOperationException {
+        //given
+        given(companyRepository.findNextPage(1, PageRequest.of(0, 2))).willReturn(Arrays.asList(
+                new Company(2, "tx", 100, new ArrayList<>()),
+                new Company(3, "alibaba", 200, new ArrayList<>())
+        ));
+
+        //when
+        CursorPage<CompanyResponse> companies = companyService.getCompaniesAfter(CursorMapper.encode(1), 1);
+        //then
+        assertEquals(1, companies.getContent().size());
+        assertEquals(2, companies.getContent().get(0).getId());
+        assertEquals(CursorMapper.encode(2), companies.getNextCursor());
+    }
+
     @Test
     void should_return_employees_when_getEmployees_by_company_id_given_company_id_is_1() {
         //given
@@ -110,6 +152,23 @@ public class CompanyServiceTest {
         assertEquals(6, employees.size());
     }
 
+    @Test
+    void should_query_employees_directly_when_getEmployees_by_company_id_after_cursor_given_company_id() throws IllegalOperationException {
+        //given
+        int companyId = 1;
+        given(employeeRepository.findNextPageByCompanyId(companyId, 4, PageRequest.of(0, 3))).willReturn(Arrays.asList(
+                new Employee(5, "goodboy", 70, "female", 5000, companyId),
+                new Employee(6, "alibaba3", 19, "male", 8000, companyId)
+        ));
+
+        //when
+        CursorPage<EmployeeResponse> employees = companyService.getEmployeesByCompanyIdAfter(companyId, CursorMapper.encode(4), 2);
+        //then
+        assertEquals(2, employees.getContent().size());
+        assertNull(employees.getNextCursor());
+        verify(companyRepository, never()).findById(companyId);
+    }
+
     @Test
     void should_return_added_company_when_add_company_given_company() {
         //given
@@ -146,7 +205,7 @@ public class CompanyServiceTest {
         given(companyRepository.save(company)).willReturn(company);
 
         //when
-        CompanyResponse updatedCompany = companyService.updateCompany(companyId, company);
+        CompanyResponse updatedCompany = companyService.updateCompany(companyId, company, null);
         //then
         assertNotNull(updatedCompany);
         assertEquals(company.getId(), updatedCompany.getId());
@@ -156,31 +215,48 @@ public class CompanyServiceTest {
     }
 
     @Test
-    void should_return_deleted_company_when_delete_company_given_company_id_is_1() throws NoSuchDataException {
+    void should_recount_previous_companies_when_update_company_given_employee_moved_from_another_company() throws NoSuchDataException, IllegalOperationException {
         //given
         Integer companyId = 1;
-        Company company = new Company(1, "alibaba", 200, new ArrayList<>(Arrays.asList(
-                new Employee(4, "alibaba1", 20, "male", 6000),
-                new Employee(11, "tengxun2", 19, "female", 7000),
-                new Employee(6, "alibaba3", 19, "male", 8000),
-                new Employee(13, "huawei", 60, "male", 4000),
-                new Employee(1, "Quentin", 18, "male", 10000),
-                new Employee(5, "goodboy", 70, "female", 5000)
+        Company company = new Company(1, "alibaba", 0, new ArrayList<>(Arrays.asList(
+                new Employee(4, "alibaba1", 20, "male", 6000, 1),
+                new Employee(11, "tengxun2", 19, "female", 7000, 2)
         )));
         given(companyRepository.findById(companyId)).willReturn(Optional.of(company));
+        given(companyRepository.save(company)).willReturn(company);
+        given(employeeRepository.findAllById(Arrays.asList(4, 11))).willReturn(Arrays.asList(
+                new Employee(4, "alibaba1", 20, "male", 6000, 1),
+                new Employee(11, "tengxun2", 19, "female", 7000, 2)));
+
+        //when
+        CompanyResponse updatedCompany = companyService.updateCompany(companyId, company, null);
+        //then
+        assertEquals(2, updatedCompany.getEmployeesNumber());
+        verify(companyRepository).recountEmployeesNumbers(Collections.singleton(2));
+    }
+
+    @Test
+    void should_return_deleted_company_when_delete_company_given_company_id_is_1() throws NoSuchDataException {
+        //given
+        Integer companyId = 1;
+        given(companyRepository.findResponseById(companyId)).willReturn(Optional.of(new CompanyResponse(1, "alibaba", 6)));
+        given(employeeRepository.findIdsByCompanyId(companyId)).willReturn(Arrays.asList(4, 11, 6, 13, 1, 5));
 
         //when
         CompanyResponse deletedCompany = companyService.deleteCompanyById(companyId);
         //then
         assertNotNull(deletedCompany);
-        assertEquals(company.getId(), deletedCompany.getId());
+        assertEquals(companyId, deletedCompany.getId());
+        verify(employeeRepository).bulkDeleteByCompanyId(companyId);
+        verify(companyRepository).bulkDeleteById(companyId);
+        verify(companyRepository, never()).delete(any());
     }
 
     @Test
     void should_return_not_such_data_when_delete_company_given_wrong_id() {
         //given
         CompanyRepository mockedCompanyRepository = mock(CompanyRepository.class);
-        CompanyService companyService = new CompanyService(mockedCompanyRepository);
+        CompanyService companyService = new CompanyService(mockedCompanyRepository, mock(EmployeeRepository.class), mock(EmployeeNameIndex.class));
         //when
         Throwable exception = assertThrows(NoSuchDataException.class,
                 () -> companyService.deleteCompanyById(1));
@@ -193,12 +269,12 @@ public class CompanyServiceTest {
     void should_return_not_such_data_when_updat_company_given_id_not_exists() {
         //given
         CompanyRepository mockedCompanyRepository = mock(CompanyRepository.class);
-        CompanyService companyService = new CompanyService(mockedCompanyRepository);
+        CompanyService companyService = new CompanyService(mockedCompanyRepository, mock(EmployeeRepository.class), mock(EmployeeNameIndex.class));
         Company company = new Company();
         company.setId(1);
         //when
         Throwable exception = assertThrows(NoSuchDataException.class,
-                () -> companyService.updateCompany(1, company));
+                () -> companyService.updateCompany(1, company, null));
         //then
         assertEquals(NoSuchDataException.class, exception.getClass());
     }
@@ -207,13 +283,13 @@ public class CompanyServiceTest {
     void should_return_illegal_operation_exception_when_update_company_given_id_not_equals_updated_employee_id() {
         //given
         CompanyRepository mockedCompanyRepository = mock(CompanyRepository.class);
-        CompanyService companyService = new CompanyService(mockedCompanyRepository);
+        CompanyService companyService = new CompanyService(mockedCompanyRepository, mock(EmployeeRepository.class), mock(EmployeeNameIndex.class));
         int id = 1;
         Company company = new Company(2,"OOCL",0,null);
 
         //when
         Throwable exception = assertThrows(IllegalOperationException.class,
-                () -> companyService.updateCompany(1, company));
+                () -> companyService.updateCompany(1, company, null));
 
         //then
         assertEquals(IllegalOperationException.class,exception.getClass());
@@ -0,0 +1,147 @@
+package com.thoughtworks.springbootemployee.service;
+
+import com.thoughtworks.springbootemployee.dto.EmployeeSuggestion;
+import com.thoughtworks.springbootemployee.repository.EmployeeRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EmployeeNameIndexTest {
+
+    private final EmployeeRepository employeeRepository = mock(EmployeeRepository.class);
+    private final EmployeeNameIndex nameIndex = new EmployeeNameIndex(employeeRepository);
+
+    @Test
+    void should_return_employees_with_matching_token_when_suggest_given_prefix_of_any_name_token() {
+        //given
+        nameIndex.put(1, "Karen Smith");
+        nameIndex.put(2, "Zach Karlsson");
+        nameIndex.put(3, "York");
+
+        //when
+        List<EmployeeSuggestion> suggestions = nameIndex.suggest("KAR", 10);
+
+        //then
+        assertEquals(2, suggestions.size());
+        assertEquals("Karen Smith", suggestions.get(0).getName());
+        assertEquals("Zach Karlsson", suggestions.get(1).getName());
+    }
+
+    @Test
+    void should_return_employees_matching_every_token_when_suggest_given_several_tokens() {
+        //given
+        nameIndex.put(1, "Karen Smith");
+        nameIndex.put(2, "Karen Jones");
+
+        //when
+        List<EmployeeSuggestion> suggestions = nameIndex.suggest("karen j", 10);
+
+        //then
+        assertEquals(1, suggestions.size());
+        assertEquals(2, suggestions.get(0).getId());
+    }
+
+    @Test
+    void should_stop_at_limit_when_suggest_given_more_matches_than_limit() {
+        //given
+        for (int i = 0; i < 20; i++) {
+            nameIndex.put(i, "alex" + i);
+        }
+
+        //when
+        List<EmployeeSuggestion> suggestions = nameIndex.suggest("alex", 5);
+
+        //then
+        assertEquals(5, suggestions.size());
+    }
+
+    @Test
+    void should_forget_old_name_when_put_given_renamed_employee() {
+        //given
+        nameIndex.put(1, "chris");
+
+        //when
+        nameIndex.put(1, "green");
+
+        //then
+        assertTrue(nameIndex.suggest("chris", 10).isEmpty());
+        assertEquals(1, nameIndex.suggest("gr", 10).size());
+        assertEquals(1, nameIndex.size());
+    }
+
+    @Test
+    void should_return_nothing_when_suggest_given_removed_employee() {
+        //given
+        nameIndex.put(1, "chris");
+
+        //when
+        nameIndex.remove(1);
+
+        //then
+        assertTrue(nameIndex.suggest("chris", 10).isEmpty());
+    }
+
+    @Test
+    void should_keep_only_last_name_when_put_given_concurrent_renames_of_same_employee() throws Exception {
+        //given
+        ExecutorService writers = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> renames = new ArrayList<>();
+        for (int writer = 0; writer < 4; writer++) {
+            String name = "writer" + writer;
+            renames.add(writers.submit(() -> {
+                start.await();
+                for (int i = 0; i < 2000; i++) {
+                    nameIndex.put(1, name + " " + i);
+                }
+                return null;
+            }));
+        }
+
+        //when
+        start.countDown();
+        for (Future<?> rename : renames) {
+            rename.get();
+        }
+        writers.shutdown();
+
+        //then
+        int namesFound = 0;
+        for (int writer = 0; writer < 4; writer++) {
+            namesFound += nameIndex.suggest("writer" + writer, 10).size();
+        }
+        assertEquals(1, namesFound);
+    }
+
+    @Test
+    void should_keep_changes_committed_during_load_when_load_given_older_snapshot() {
+        //given
+        when(employeeRepository.streamSuggestions()).thenReturn(Stream.of(new EmployeeSuggestion(1, "chris"), new EmployeeSuggestion(2, "york"))
+                .peek(employee -> {
+                    if (employee.getId() == 1) {
+                        nameIndex.put(1, "green");
+                        nameIndex.remove(2);
+                    }
+                }));
+
+        //when
+        nameIndex.load();
+
+        //then
+        assertTrue(nameIndex.suggest("chris", 10).isEmpty());
+        assertEquals(1, nameIndex.suggest("green", 10).size());
+        assertTrue(nameIndex.suggest("york", 10).isEmpty());
+        assertEquals(1, nameIndex.size());
+    }
+}
@@ -1,13 +1,18 @@
 package com.thoughtworks.springbootemployee.service;
 
+import com.thoughtworks.springbootemployee.Mapper.CursorMapper;
+import com.thoughtworks.springbootemployee.dto.CursorPage;
 import com.thoughtworks.springbootemployee.dto.EmployeeResponse;
 import com.thoughtworks.springbootemployee.exception.IllegalOperationException;
 import com.thoughtworks.springbootemployee.exception.NoSuchDataException;
 import com.thoughtworks.springbootemployee.model.Employee;
+import com.thoughtworks.springbootemployee.repository.CompanyRepository;
 import com.thoughtworks.springbootemployee.repository.EmployeeRepository;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -16,20 +21,23 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.BDDMockito.given;
-import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.*;
 
 public class EmployeeServiceTest {
 
     private final EmployeeRepository employeeRepository = mock(EmployeeRepository.class);
-    private final EmployeeService service = new EmployeeService(employeeRepository);
+    private final CompanyRepository companyRepository = mock(CompanyRepository.class);
+    private final EmployeeService service = new EmployeeService(employeeRepository, companyRepository, mock(EmployeeNameIndex.class));
 
     @Test
     void should_return_all_employees_when_get_all_given_none() {
         //given
-        given(employeeRepository.findAll()).willReturn(new ArrayList<>(Arrays.asList(
-                new Employee(4, "alibaba1", 20, "male", 6000),
-                new Employee(1, "Quentin", 18, "male", 10000)
+        given(employeeRepository.findAllResponses()).willReturn(new ArrayList<>(Arrays.asList(
+                new EmployeeResponse(4, "alibaba1", 20, "male", 6000, null),
+                new EmployeeResponse(1, "Quentin", 18, "male", 10000, null)
         )));
 
         //when
@@ -56,7 +64,7 @@ public class EmployeeServiceTest {
     }
 
     @Test
-    void should_return_employee_when_add_employee_given_employee() {
+    void should_return_employee_when_add_employee_given_employee() throws NoSuchDataException {
         //given
         Employee employee = new Employee(80, "ggggggg", 20, "male", 100);
         given(employeeRepository.save(employee)).willReturn(employee);
@@ -68,6 +76,105 @@ public class EmployeeServiceTest {
         assertNotNull(addedEmployee);
     }
 
+    @Test
+    void should_increase_employees_number_when_add_employee_given_employee_of_company() throws NoSuchDataException {
+        //given
+        Employee employee = new Employee(80, "ggggggg", 20, "male", 100, 1);
+        given(companyRepository.existsById(1)).willReturn(true);
+        given(employeeRepository.save(employee)).willReturn(employee);
+
+        //when
+        service.addEmployee(employee);
+
+        //then
+        verify(companyRepository).adjustEmployeesNumber(1, 1);
+    }
+
+    @Test
+    void should_increase_employees_number_once_per_company_when_add_employees_given_employees_of_companies() throws IllegalOperationException {
+        //given
+        List<Employee> employees = Arrays.asList(
+                new Employee(null, "zach", 20, "male", 1000, 1),
+                new Employee(null, "york", 20, "female", 1000, 2),
+                new Employee(null, "alex", 20, "female", 1000, 1),
+                new Employee(null, "green", 20, "male", 1000));
+        given(companyRepository.existsById(anyInt())).willReturn(true);
+        given(employeeRepository.batchInsert(anyList())).willReturn(Arrays.asList(1, 2, 3, 4));
+
+        //when
+        service.addEmployees(employees);
+
+        //then
+        verify(companyRepository).existsById(1);
+        verify(companyRepository).existsById(2);
+        verify(companyRepository).adjustEmployeesNumber(1, 2);
+        verify(companyRepository).adjustEmployeesNumber(2, 1);
+        verifyNoMoreInteractions(companyRepository);
+    }
+
+    @Test
+    void should_insert_in_chunks_when_add_employees_given_more_employees_than_batch_size() throws IllegalOperationException {
+        //given
+        List<Employee> employees = new ArrayList<>();
+        for (int i = 0; i < EmployeeService.BATCH_SIZE * 2 + 1; i++) {
+            employees.add(new Employee(null, "employee" + i, 20, "male", 1000));
+        }
+        given(employeeRepository.batchInsert(anyList())).willAnswer(invocation -> {
+            List<Integer> ids = new ArrayList<>();
+            for (int i = 0; i < invocation.<List<Employee>>getArgument(0).size(); i++) {
+                ids.add(i);
+            }
+            return ids;
+        });
+
+        //when
+        List<Integer> ids = service.addEmployees(employees);
+
+        //then
+        assertEquals(employees.size(), ids.size());
+        verify(employeeRepository, times(3)).batchInsert(anyList());
+    }
+
+    @Test
+    void should_return_illegal_operation_exception_when_add_employees_given_employee_without_name() {
+        //given
+        List<Employee> employees = Arrays.asList(
+                new Employee(null, "zach", 20, "male", 1000),
+                new Employee(null, null, 20, "male", 1000));
+
+        //when
+        assertThrows(IllegalOperationException.class, () -> service.addEmployees(employees));
+
+        //then
+        verify(employeeRepository, never()).batchInsert(anyList());
+    }
+
+    @Test
+    void should_return_no_such_data_exception_when_add_employee_given_company_not_exists() {
+        //given
+        Employee employee = new Employee(80, "ggggggg", 20, "male", 100, 404);
+
+        //when
+        assertThrows(NoSuchDataException.class, () -> service.addEmployee(employee));
+
+        //then
+        verify(employeeRepository, never()).save(any());
+    }
+
+    @Test
+    void should_return_illegal_operation_exception_when_add_employees_given_employee_of_company_not_exists() {
+        //given
+        List<Employee> employees = Arrays.asList(
+                new Employee(null, "zach", 20, "male", 1000),
+                new Employee(null, "york", 20, "male", 1000, 404));
+
+        //when
+        assertThrows(IllegalOperationException.class, () -> service.addEmployees(employees));
+
+        //then
+        verify(employeeRepository, never()).batchInsert(anyList());
+    }
+
     @Test
     void should_return_updated_employee_when_update_given_employee_and_employeeId_is_1() throws NoSuchDataException, IllegalOperationException {
         //given
@@ -77,7 +184,7 @@ public class EmployeeServiceTest {
         given(employeeRepository.save(employee)).willReturn(employee);
 
         //when
-        EmployeeResponse updatedEmployee = service.updateEmployee(employeeId, employee);
+        EmployeeResponse updatedEmployee = service.updateEmployee(employeeId, employee, null);
 
         //then
         assertNotNull(updatedEmployee);
@@ -88,6 +195,55 @@ public class EmployeeServiceTest {
         assertEquals(employee.getSalary(), updatedEmployee.getSalary());
     }
 
+    @Test
+    void should_move_employees_number_when_update_given_employee_assigned_to_another_company() throws NoSuchDataException, IllegalOperationException {
+        //given
+        int employeeId = 1;
+        Employee employee = new Employee(1, "zach", 30, "female", 200, 1);
+        given(employeeRepository.findById(employeeId)).willReturn(Optional.of(employee));
+        given(companyRepository.existsById(2)).willReturn(true);
+        given(employeeRepository.save(employee)).willReturn(employee);
+
+        //when
+        EmployeeResponse updatedEmployee = service.updateEmployee(employeeId, new Employee(1, "zach", 30, "female", 200, 2), null);
+
+        //then
+        assertEquals(2, updatedEmployee.getCompanyId());
+        verify(companyRepository).adjustEmployeesNumber(1, -1);
+        verify(companyRepository).adjustEmployeesNumber(2, 1);
+    }
+
+    @Test
+    void should_return_no_such_data_exception_when_update_given_employee_assigned_to_company_not_exists() {
+        //given
+        int employeeId = 1;
+        given(employeeRepository.findById(employeeId)).willReturn(Optional.of(new Employee(1, "zach", 30, "female", 200, 1)));
+
+        //when
+        assertThrows(NoSuchDataException.class,
+                () -> service.updateEmployee(employeeId, new Employee(1, "zach", 30, "female", 200, 404), null));
+
+        //then
+        verify(employeeRepository, never()).save(any());
+        verify(companyRepository, never()).adjustEmployeesNumber(anyInt(), anyInt());
+    }
+
+    @Test
+    void should_reject_update_when_update_given_stale_expected_version() {
+        //given
+        int employeeId = 1;
+        Employee employee = new Employee(1, "zach", 30, "female", 200, 1);
+        employee.setVersion(3);
+        given(employeeRepository.findById(employeeId)).willReturn(Optional.of(employee));
+
+        //when
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+                () -> service.updateEmployee(employeeId, new Employee(1, "zach", 31, "female", 200, 1), 2));
+
+        //then
+        verify(employeeRepository, never()).save(any());
+    }
+
     @Test
     void should_return_deleted_employee_when_delete_given_id() throws NoSuchDataException {
         //given
@@ -103,6 +259,19 @@ public class EmployeeServiceTest {
         assertEquals(id, employee.getId());
     }
 
+    @Test
+    void should_decrease_employees_number_when_delete_given_employee_of_company() throws NoSuchDataException {
+        //given
+        given(employeeRepository.findById(1)).willReturn(
+                Optional.of(new Employee(1, "Quentin", 18, "male", 10000, 3)));
+
+        //when
+        service.deleteEmployee(1);
+
+        //then
+        verify(companyRepository).adjustEmployeesNumber(3, -1);
+    }
+
     @Test
     void should_return_employees_when_query_by_page_given_page_and_pageSize() {
         //given
@@ -117,16 +286,48 @@ public class EmployeeServiceTest {
         assertNotNull(employees);
     }
 
+    @Test
+    void should_return_employees_and_next_cursor_when_query_after_cursor_given_more_rows_than_limit() throws IllegalOperationException {
+        //given
+        given(employeeRepository.findNextPage(3, PageRequest.of(0, 3))).willReturn(Arrays.asList(
+                new Employee(4, "Quentin", 18, "male", 10000),
+                new Employee(5, "Quentin", 18, "male", 10000),
+                new Employee(6, "Quentin", 18, "male", 10000)
+        ));
+
+        //when
+        CursorPage<EmployeeResponse> employees = service.getEmployeesAfter(CursorMapper.encode(3), 2);
+
+        //then
+        assertEquals(2, employees.getContent().size());
+        assertEquals(CursorMapper.encode(5), employees.getNextCursor());
+    }
+
+    @Test
+    void should_return_no_next_cursor_when_query_after_cursor_given_last_page() throws IllegalOperationException {
+        //given
+        given(employeeRepository.findNextPage(0, PageRequest.of(0, 3))).willReturn(Arrays.asList(
+                new Employee(1, "Quentin", 18, "male", 10000)
+        ));
+
+        //when
+        CursorPage<EmployeeResponse> employees = service.getEmployeesAfter(null, 2);
+
+        //then
+        assertEquals(1, employees.getContent().size());
+        assertNull(employees.getNextCursor());
+    }
+
     @Test
     void should_return_employees_when_query_by_gender_given_gender_is_male() {
         //given
         String gender = "male";
-        given(employeeRepository.findByGender(gender)).willReturn(Arrays.asList(
-                new Employee(1, "Quentin", 18, "male", 10000),
-                new Employee(2, "Quentin", 18, "male", 10000),
-                new Employee(3, "Quentin", 18, "male", 10000),
-                new Employee(4, "Quentin", 18, "male", 10000),
-                new Employee(5, "Quentin", 18, "male", 10000)
+        given(employeeRepository.findResponsesByGender(gender)).willReturn(Arrays.asList(
+                new EmployeeResponse(1, "Quentin", 18, "male", 10000, null),
+                new EmployeeResponse(2, "Quentin", 18, "male", 10000, null),
+                new EmployeeResponse(3, "Quentin", 18, "male", 10000, null),
+                new EmployeeResponse(4, "Quentin", 18, "male", 10000, null),
+                new EmployeeResponse(5, "Quentin", 18, "male", 10000, null)
         ));
         //when
         List<EmployeeResponse> employees = service.getEmployeesByGender(gender);
@@ -136,11 +337,21 @@ public class EmployeeServiceTest {
         assertEquals(5, employees.size());
     }
 
+    @Test
+    void should_return_illegal_operation_exception_when_get_statistics_given_unknown_group() {
+        //given
+        List<String> groupBy = Arrays.asList("name");
+        given(employeeRepository.aggregate("salary", groupBy)).willThrow(new InvalidDataAccessApiUsageException("unknown statistics group name"));
+
+        //when
+        assertThrows(IllegalOperationException.class, () -> service.getStatistics("salary", groupBy));
+    }
+
     @Test
     void should_return_not_such_data_when_delete_employee_given_wrong_id() {
         //given
         EmployeeRepository mockedEmployeeRepository = mock(EmployeeRepository.class);
-        EmployeeService employeeService = new EmployeeService(mockedEmployeeRepository);
+        EmployeeService employeeService = new EmployeeService(mockedEmployeeRepository, mock(CompanyRepository.class), mock(EmployeeNameIndex.class));
         //when
         Throwable exception = assertThrows(NoSuchDataException.class,
                 () -> employeeService.deleteEmployee(1));
@@ -153,12 +364,12 @@ public class EmployeeServiceTest {
     void should_return_not_such_data_when_update_given_id_not_exists() {
         //given
         EmployeeRepository mockedEmployeeRepository = mock(EmployeeRepository.class);
-        EmployeeService employeeService = new EmployeeService(mockedEmployeeRepository);
+        EmployeeService employeeService = new EmployeeService(mockedEmployeeRepository, mock(CompanyRepository.class), mock(EmployeeNameIndex.class));
         Employee employee = new Employee();
         employee.setId(1);
         //when
         Throwable exception = assertThrows(NoSuchDataException.class,
-                () -> employeeService.updateEmployee(1, employee));
+                () -> employeeService.updateEmployee(1, employee, null));
         //then
         assertEquals(NoSuchDataException.class, exception.getClass());
     }
@@ -167,13 +378,13 @@ public class EmployeeServiceTest {
     void should_return_illegal_operation_exception_when_update_given_id_not_equals_updated_employee_id() {
         //given
         EmployeeRepository mockedEmployeeRepository = mock(EmployeeRepository.class);
-        EmployeeService employeeService = new EmployeeService(mockedEmployeeRepository);
+        EmployeeService employeeService = new EmployeeService(mockedEmployeeRepository, mock(CompanyRepository.class), mock(EmployeeNameIndex.class));
         int id = 1;
         Employee employee = new Employee(2, "zach", 18, "male", 1000);
 
         //when
         Throwable exception = assertThrows(IllegalOperationException.class,
-                () -> employeeService.updateEmployee(1, employee));
+                () -> employeeService.updateEmployee(1, employee, null));
 
         //then
         assertEquals(IllegalOperationException.class,exception.getClass());
@@ -0,0 +1,236 @@
+package com.thoughtworks.springbootemployee.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thoughtworks.springbootemployee.dto.EmployeeRequest;
+import com.thoughtworks.springbootemployee.dto.EmployeeWriteStatus;
+import com.thoughtworks.springbootemployee.exception.IllegalOperationException;
+import com.thoughtworks.springbootemployee.exception.WriteQueueFullException;
+import com.thoughtworks.springbootemployee.model.Employee;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InOrder;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class EmployeeWriteBehindServiceTest {
+
+    private static final long NEVER_FLUSH_MILLIS = 3_600_000;
+    private static final int SEGMENT_ENTRIES = 1000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final EmployeeService employeeService = mock(EmployeeService.class);
+    private EmployeeWriteBehindService writeBehindService;
+
+    @TempDir
+    Path tempDir;
+    @Captor
+    ArgumentCaptor<Employee> employee;
+    @Captor
+    ArgumentCaptor<List<Employee>> employees;
+
+    @AfterEach
+    void stop() throws Exception {
+        if (writeBehindService != null) {
+            writeBehindService.stop();
+        }
+    }
+
+    @Test
+    void should_reject_write_when_submit_given_queue_is_full() throws Exception {
+        //given
+        writeBehindService = start(1);
+        writeBehindService.submitCreate(new EmployeeRequest(null, "zach", 21, "male", 5000, null));
+
+        //when
+        //then
+        assertThrows(WriteQueueFullException.class,
+                () -> writeBehindService.submitCreate(new EmployeeRequest(null, "york", 22, "female", 6000, null)));
+    }
+
+    @Test
+    void should_return_illegal_operation_exception_when_submit_update_given_no_employee() throws Exception {
+        //given
+        writeBehindService = start(10);
+
+        //when
+        //then
+        assertThrows(IllegalOperationException.class, () -> writeBehindService.submitUpdate(1, null, null));
+        assertEquals(0, writeBehindService.getQueueSize());
+    }
+
+    @Test
+    void should_apply_only_latest_update_when_flush_given_several_updates_of_same_employee() throws Exception {
+        //given
+        writeBehindService = start(10);
+        EmployeeWriteStatus first = writeBehindService.submitUpdate(1, new EmployeeRequest(1, "zach", 21, "male", 5000, null), null);
+        EmployeeWriteStatus second = writeBehindService.submitUpdate(1, new EmployeeRequest(1, "zach", 21, "male", 7000, null), null);
+
+        //when
+        writeBehindService.flush();
+
+        //then
+        verify(employeeService, times(1)).updateEmployee(eq(1), employee.capture(), any());
+        assertEquals(7000, employee.getValue().getSalary());
+        assertEquals(EmployeeWriteStatus.WRITTEN, writeBehindService.getStatus(first.getTrackingId()).getState());
+        assertEquals(EmployeeWriteStatus.WRITTEN, writeBehindService.getStatus(second.getTrackingId()).getState());
+    }
+
+    @Test
+    void should_replay_unfinished_writes_when_start_given_journal_left_by_previous_run() throws Exception {
+        //given
+        Path journal = tempDir.resolve("employee-writes.journal");
+        List<EmployeeWriteBehindService.JournalEntry> entries = Arrays.asList(
+                new EmployeeWriteBehindService.JournalEntry("a", EmployeeWriteBehindService.CREATE, null, null,
+                        new EmployeeRequest(null, "zach", 21, "male", 5000, null)),
+                new EmployeeWriteBehindService.JournalEntry("b", EmployeeWriteBehindService.CREATE, null, null,
+                        new EmployeeRequest(null, "york", 22, "female", 6000, null)),
+                new EmployeeWriteBehindService.JournalEntry("a", "DONE", null, null, null));
+        StringBuilder lines = new StringBuilder();
+        for (EmployeeWriteBehindService.JournalEntry entry : entries) {
+            lines.append(objectMapper.writeValueAsString(entry)).append('\n');
+        }
+        Files.write(journal, lines.toString().getBytes(StandardCharsets.UTF_8));
+        given(employeeService.addEmployees(anyList())).willReturn(Collections.singletonList(7));
+
+        //when
+        writeBehindService = start(10);
+
+        //then
+        verify(employeeService).addEmployees(employees.capture());
+        assertEquals(1, employees.getValue().size());
+        assertEquals("york", employees.getValue().get(0).getName());
+        assertEquals(7, writeBehindService.getStatus("b").getEmployeeId());
+        assertEquals(0, Files.size(journal));
+    }
+
+    @Test
+    void should_apply_each_update_in_order_when_flush_given_chain_of_if_match_updates_of_same_employee() throws Exception {
+        //given
+        writeBehindService = start(10);
+        EmployeeWriteStatus first = writeBehindService.submitUpdate(1, new EmployeeRequest(1, "zach", 21, "male", 6000, null), 1);
+        EmployeeWriteStatus second = writeBehindService.submitUpdate(1, new EmployeeRequest(1, "zach", 21, "male", 7000, null), 2);
+
+        //when
+        writeBehindService.flush();
+
+        //then
+        InOrder updates = inOrder(employeeService);
+        updates.verify(employeeService).updateEmployee(eq(1), employee.capture(), eq(1));
+        updates.verify(employeeService).updateEmployee(eq(1), employee.capture(), eq(2));
+        assertEquals(Arrays.asList(6000, 7000), Arrays.asList(employee.getAllValues().get(0).getSalary(), employee.getAllValues().get(1).getSalary()));
+        assertEquals(EmployeeWriteStatus.WRITTEN, writeBehindService.getStatus(first.getTrackingId()).getState());
+        assertEquals(EmployeeWriteStatus.WRITTEN, writeBehindService.getStatus(second.getTrackingId()).getState());
+    }
+
+    @Test
+    void should_keep_write_journalled_and_apply_it_after_restart_when_flush_given_database_unavailable() throws Exception {
+        //given
+        given(employeeService.addEmployees(anyList()))
+                .willThrow(new CannotCreateTransactionException("connection is not available"))
+                .willReturn(Collections.singletonList(7));
+        writeBehindService = start(10);
+        EmployeeWriteStatus accepted = writeBehindService.submitCreate(new EmployeeRequest(null, "zach", 21, "male", 5000, null));
+
+        //when
+        writeBehindService.flush();
+        writeBehindService.stop();
+        assertEquals(EmployeeWriteStatus.ACCEPTED, writeBehindService.getStatus(accepted.getTrackingId()).getState());
+        writeBehindService = start(10);
+
+        //then
+        verify(employeeService, times(2)).addEmployees(anyList());
+        assertEquals(EmployeeWriteStatus.WRITTEN, writeBehindService.getStatus(accepted.getTrackingId()).getState());
+        assertEquals(7, writeBehindService.getStatus(accepted.getTrackingId()).getEmployeeId());
+        assertEquals(0, Files.size(tempDir.resolve("employee-writes.journal")));
+    }
+
+    @Test
+    void should_apply_queued_writes_on_writer_thread_when_stop_given_writes_not_flushed_yet() throws Exception {
+        //given
+        List<String> writingThreads = new ArrayList<>();
+        given(employeeService.addEmployees(anyList())).willAnswer(invocation -> {
+            writingThreads.add(Thread.currentThread().getName());
+            return Collections.singletonList(7);
+        });
+        writeBehindService = start(10);
+        EmployeeWriteStatus accepted = writeBehindService.submitCreate(new EmployeeRequest(null, "zach", 21, "male", 5000, null));
+
+        //when
+        writeBehindService.stop();
+
+        //then
+        assertEquals(Collections.singletonList("employee-write-behind"), writingThreads);
+        assertEquals(EmployeeWriteStatus.WRITTEN, writeBehindService.getStatus(accepted.getTrackingId()).getState());
+        writeBehindService = null;
+    }
+
+    @Test
+    void should_delete_done_segments_and_replay_only_outstanding_write_when_flush_given_write_still_failing() throws Exception {
+        //given
+        given(employeeService.addEmployees(anyList())).willAnswer(invocation -> {
+            List<Employee> added = invocation.getArgument(0);
+            if (added.stream().anyMatch(employee -> employee.getName().equals("york"))) {
+                throw new CannotCreateTransactionException("connection is not available");
+            }
+            return Collections.singletonList(7);
+        });
+        writeBehindService = start(10, 2);
+        writeBehindService.submitCreate(new EmployeeRequest(null, "zach", 21, "male", 5000, null));
+        writeBehindService.submitCreate(new EmployeeRequest(null, "alex", 23, "female", 7000, null));
+        EmployeeWriteStatus failing = writeBehindService.submitCreate(new EmployeeRequest(null, "york", 22, "female", 6000, null));
+
+        //when
+        writeBehindService.flush();
+
+        //then
+        assertFalse(Files.exists(tempDir.resolve("employee-writes.journal.1")));
+        assertTrue(Files.exists(tempDir.resolve("employee-writes.journal.2")));
+        writeBehindService.stop();
+        given(employeeService.addEmployees(anyList())).willReturn(Collections.singletonList(8));
+        writeBehindService = start(10, 2);
+        verify(employeeService, atLeastOnce()).addEmployees(employees.capture());
+        assertEquals(1, employees.getValue().size());
+        assertEquals("york", employees.getValue().get(0).getName());
+        assertEquals(EmployeeWriteStatus.WRITTEN, writeBehindService.getStatus(failing.getTrackingId()).getState());
+        assertFalse(Files.exists(tempDir.resolve("employee-writes.journal.2")));
+        assertEquals(0, Files.size(tempDir.resolve("employee-writes.journal")));
+    }
+
+    private EmployeeWriteBehindService start(int capacity) throws Exception {
+        return start(capacity, SEGMENT_ENTRIES);
+    }
+
+    private EmployeeWriteBehindService start(int capacity, int segmentEntries) throws Exception {
+        EmployeeWriteBehindService service = new EmployeeWriteBehindService(employeeService, objectMapper, capacity, 500,
+                NEVER_FLUSH_MILLIS, tempDir.resolve("employee-writes.journal").toString(), segmentEntries);
+        service.start();
+        return service;
+    }
+}